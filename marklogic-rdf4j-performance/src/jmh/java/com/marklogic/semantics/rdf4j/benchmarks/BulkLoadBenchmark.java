@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load the test ontology, streamed as a graph merge or added as
+ * parsed statements through the write cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkLoadBenchmark {
+
+    private static final String BASE_URI = "http://example.org/example1/";
+
+    private MarkLogicRestStub stub;
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+
+    private byte[] data;
+    private Model model;
+    private Resource context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = new MarkLogicRestStub();
+        rep = stub.newRepository();
+        rep.initialize();
+        conn = rep.getConnection();
+        data = resource("/testdata/test-small.owl");
+        model = Rio.parse(new ByteArrayInputStream(data), BASE_URI, RDFFormat.RDFXML);
+        context = conn.getValueFactory().createIRI("http://marklogic.com/test/bulk");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        conn.close();
+        rep.shutDown();
+        stub.close();
+    }
+
+    @Benchmark
+    public void mergeStream() throws Exception {
+        conn.add(new ByteArrayInputStream(data), BASE_URI, RDFFormat.RDFXML, context);
+    }
+
+    @Benchmark
+    public void addStatements() throws Exception {
+        conn.add(model, context);
+        conn.sync();
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream in = BulkLoadBenchmark.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
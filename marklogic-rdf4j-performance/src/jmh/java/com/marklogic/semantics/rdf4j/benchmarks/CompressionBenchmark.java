@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import com.marklogic.semantics.rdf4j.MarkLogicRequestCompression;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to flush a cache of large literals and to merge the test ontology,
+ * with and without gzipped request bodies. The stub is on loopback, so this
+ * measures the client CPU spent compressing, not the bandwidth saved; bytes
+ * received per operation are printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompressionBenchmark {
+
+    private static final String BASE_URI = "http://example.org/example1/";
+
+    private static final int FLUSH_SIZE = 500;
+
+    // configurators apply to every client created afterwards, so each value runs in its own fork
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    private MarkLogicRestStub stub;
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+
+    private byte[] data;
+    private ValueFactory f;
+    private IRI subject;
+    private IRI predicate;
+    private IRI context;
+    private String text;
+    private long count;
+    private long operations;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (compressed) {
+            DatabaseClientFactory.addConfigurator(new MarkLogicRequestCompression());
+        }
+        stub = new MarkLogicRestStub();
+        rep = stub.newRepository();
+        rep.initialize();
+        conn = rep.getConnection();
+        conn.configureWriteCache(0, 100000, FLUSH_SIZE * 2);
+        conn.configureWriteCacheBytes(Long.MAX_VALUE);
+        data = resource("/testdata/test-small.owl");
+        f = conn.getValueFactory();
+        subject = f.createIRI("http://example.org/people/alice");
+        predicate = f.createIRI("http://example.org/ontology/description");
+        context = f.createIRI("http://marklogic.com/test/compression");
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 4096) {
+            sb.append("Alice was beginning to get very tired of sitting by her sister on the bank. ");
+        }
+        text = sb.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        conn.close();
+        rep.shutDown();
+        if (operations > 0) {
+            System.out.println("bytes received per operation: " + stub.getBytesReceived() / operations);
+        }
+        stub.close();
+    }
+
+    @Benchmark
+    public void flush() throws Exception {
+        for (int i = 0; i < FLUSH_SIZE; i++) {
+            conn.add(subject, predicate, f.createLiteral(text + count++), context);
+        }
+        conn.sync();
+        operations++;
+    }
+
+    @Benchmark
+    public void mergeStream() throws Exception {
+        conn.add(new ByteArrayInputStream(data), BASE_URI, RDFFormat.RDFXML, context);
+        operations++;
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream in = CompressionBenchmark.class.getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to acquire and close a connection of an initialized repository, alone
+ * and contended by several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConnectionBenchmark {
+
+    private MarkLogicRestStub stub;
+    private MarkLogicRepository rep;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = new MarkLogicRestStub();
+        rep = stub.newRepository();
+        rep.initialize();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        rep.shutDown();
+        stub.close();
+    }
+
+    @Benchmark
+    public void acquire() throws Exception {
+        MarkLogicRepositoryConnection conn = rep.getConnection();
+        conn.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void acquireContended() throws Exception {
+        MarkLogicRepositoryConnection conn = rep.getConnection();
+        conn.close();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Embedded stand-in for the MarkLogic REST endpoints used by marklogic-rdf4j,
+ * so benchmarks run offline and measure the client rather than the server.
+ *
+ * /v1/graphs/sparql answers SELECT with a recorded JSON result, CONSTRUCT and
+ * DESCRIBE with recorded N-Triples, ASK with true and updates with 204.
+ * /v1/graphs accepts merges and deletes and answers reads with the recorded
+ * N-Triples. /v1/transactions opens transactions and accepts commit and
+ * rollback. Request bodies are read fully, inflated when gzip encoded, and
+ * dropped.
+ */
+public class MarkLogicRestStub implements AutoCloseable {
+
+    private static final Pattern QUERY_FORM = Pattern.compile("\\b(SELECT|CONSTRUCT|DESCRIBE|ASK)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "marklogic-rest-stub");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final byte[] selectPayload;
+
+    private final byte[] constructPayload;
+
+    private final AtomicLong transactions = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * Starts the stub on a free local port.
+     *
+     * @throws IOException
+     */
+    public MarkLogicRestStub() throws IOException {
+        this.selectPayload = resource("/stub/select.json");
+        this.constructPayload = resource("/stub/construct.nt");
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/v1/graphs/sparql", this::sparql);
+        server.createContext("/v1/graphs", this::graphs);
+        server.createContext("/v1/transactions", this::transactions);
+        server.createContext("/", exchange -> respond(exchange, 204, null, null));
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns a new, uninitialized repository connected to the stub.
+     *
+     * @return MarkLogicRepository
+     */
+    public MarkLogicRepository newRepository() {
+        return new MarkLogicRepository("localhost", getPort(), new DatabaseClientFactory.DigestAuthContext("admin", "admin"));
+    }
+
+    /**
+     * Returns the number of requests answered.
+     *
+     * @return long
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of request body bytes received, compressed if sent so.
+     *
+     * @return long
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void sparql(HttpExchange exchange) throws IOException {
+        String body = new String(drain(exchange), StandardCharsets.UTF_8);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.contains("sparql-update")) {
+            respond(exchange, 204, null, null);
+            return;
+        }
+        String query = body.isEmpty() ? String.valueOf(exchange.getRequestURI().getQuery()) : body;
+        Matcher form = QUERY_FORM.matcher(query);
+        String keyword = form.find() ? form.group(1).toUpperCase() : "SELECT";
+        switch (keyword) {
+            case "ASK":
+                respond(exchange, 200, "application/sparql-results+json", "{\"boolean\":true}".getBytes(StandardCharsets.UTF_8));
+                break;
+            case "CONSTRUCT":
+            case "DESCRIBE":
+                respond(exchange, 200, "application/n-triples", constructPayload);
+                break;
+            default:
+                respond(exchange, 200, "application/sparql-results+json", selectPayload);
+        }
+    }
+
+    private void graphs(HttpExchange exchange) throws IOException {
+        drain(exchange);
+        if ("GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 200, "application/n-triples", constructPayload);
+        } else {
+            respond(exchange, 204, null, null);
+        }
+    }
+
+    private void transactions(HttpExchange exchange) throws IOException {
+        drain(exchange);
+        String path = exchange.getRequestURI().getPath();
+        if ("POST".equals(exchange.getRequestMethod()) && path.matches("/v1/transactions/?")) {
+            exchange.getResponseHeaders().set("Location", "/v1/transactions/" + transactions.incrementAndGet());
+            respond(exchange, 303, null, null);
+        } else {
+            respond(exchange, 204, null, null);
+        }
+    }
+
+    private byte[] drain(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = readAll(in);
+        }
+        bytesReceived.addAndGet(body.length);
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = readAll(in);
+            }
+        }
+        return body;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        requests.incrementAndGet();
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        exchange.sendResponseHeaders(status, body == null ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (body != null) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream in = MarkLogicRestStub.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Missing recorded payload " + name);
+            }
+            return readAll(in);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import com.marklogic.semantics.rdf4j.query.MarkLogicTupleQuery;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to prepare queries and apply bindings, without any request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryConstructionBenchmark {
+
+    private static final String QUERY =
+            "PREFIX foaf: <http://xmlns.com/foaf/0.1/> " +
+            "PREFIX ex: <http://example.org/ontology/> " +
+            "SELECT ?person ?name WHERE { ?person foaf:knows ?friend . ?person ex:name ?name . FILTER (?name != ?exclude) } LIMIT 100";
+
+    private MarkLogicRestStub stub;
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+
+    private MarkLogicTupleQuery prepared;
+    private IRI friend;
+    private Literal exclude;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = new MarkLogicRestStub();
+        rep = stub.newRepository();
+        rep.initialize();
+        conn = rep.getConnection();
+        prepared = conn.prepareTupleQuery(QUERY);
+        friend = conn.getValueFactory().createIRI("http://example.org/people/bob");
+        exclude = conn.getValueFactory().createLiteral("Alice \"Al\" Smith");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        conn.close();
+        rep.shutDown();
+        stub.close();
+    }
+
+    @Benchmark
+    public MarkLogicTupleQuery prepare() throws Exception {
+        return conn.prepareTupleQuery(QUERY);
+    }
+
+    @Benchmark
+    public String bind() throws Exception {
+        prepared.setBinding("friend", friend);
+        prepared.setBinding("exclude", exclude);
+        return prepared.getQueryString();
+    }
+}
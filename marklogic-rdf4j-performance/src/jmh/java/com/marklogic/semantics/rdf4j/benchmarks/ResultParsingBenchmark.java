@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.query.BooleanQuery;
+import org.eclipse.rdf4j.query.GraphQuery;
+import org.eclipse.rdf4j.query.GraphQueryResult;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to evaluate prepared queries and consume their results, parsed in the
+ * background from the stub's recorded 500 row JSON and N-Triples payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResultParsingBenchmark {
+
+    private MarkLogicRestStub stub;
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+
+    private TupleQuery tupleQuery;
+    private GraphQuery graphQuery;
+    private BooleanQuery booleanQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = new MarkLogicRestStub();
+        rep = stub.newRepository();
+        rep.initialize();
+        conn = rep.getConnection();
+        tupleQuery = conn.prepareTupleQuery("SELECT ?s ?p ?o { ?s ?p ?o }");
+        graphQuery = conn.prepareGraphQuery("CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }");
+        booleanQuery = conn.prepareBooleanQuery("ASK { ?s ?p ?o }");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        conn.close();
+        rep.shutDown();
+        stub.close();
+    }
+
+    @Benchmark
+    public void selectJson(Blackhole bh) throws Exception {
+        try (TupleQueryResult results = tupleQuery.evaluate()) {
+            while (results.hasNext()) {
+                bh.consume(results.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public void constructNTriples(Blackhole bh) throws Exception {
+        try (GraphQueryResult results = graphQuery.evaluate()) {
+            while (results.hasNext()) {
+                bh.consume(results.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean ask() throws Exception {
+        return booleanQuery.evaluate();
+    }
+}
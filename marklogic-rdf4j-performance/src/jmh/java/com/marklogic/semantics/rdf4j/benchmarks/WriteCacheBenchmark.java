@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of single statement adds through the write cache, flushed as
+ * INSERT DATA by the cache timer, of explicit flushes of a batch spread over
+ * several graphs, and of transactions buffering their adds until commit.
+ * Run with -prof gc for allocation per flushed statement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WriteCacheBenchmark {
+
+    private static final int TRANSACTION_SIZE = 1000;
+
+    private static final int FLUSH_SIZE = 500;
+
+    @Param({"750", "10000"})
+    public long cacheSize;
+
+    private MarkLogicRestStub stub;
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+
+    private ValueFactory f;
+    private IRI subject;
+    private IRI predicate;
+    private IRI[] contexts;
+    private long count;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = new MarkLogicRestStub();
+        rep = stub.newRepository();
+        rep.initialize();
+        conn = rep.getConnection();
+        conn.configureWriteCache(0, 100, cacheSize);
+        f = conn.getValueFactory();
+        subject = f.createIRI("http://example.org/people/alice");
+        predicate = f.createIRI("http://example.org/ontology/name");
+        contexts = new IRI[4];
+        for (int i = 0; i < contexts.length; i++) {
+            contexts[i] = f.createIRI("http://marklogic.com/test/context" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        conn.close();
+        rep.shutDown();
+        stub.close();
+    }
+
+    @Benchmark
+    public void cachedAdd() throws Exception {
+        conn.add(subject, predicate, f.createLiteral("Alice" + count++));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FLUSH_SIZE)
+    public void flush() throws Exception {
+        for (int i = 0; i < FLUSH_SIZE; i++) {
+            conn.add(subject, predicate, f.createLiteral("Alice \"" + count++ + "\""), contexts[i % contexts.length]);
+        }
+        conn.sync();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRANSACTION_SIZE)
+    public void transactionalAdd() throws Exception {
+        conn.begin();
+        for (int i = 0; i < TRANSACTION_SIZE; i++) {
+            conn.add(subject, predicate, f.createLiteral("Alice" + count++));
+        }
+        conn.commit();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and allocation per statement added to a reused quad batch, with
+ * objects repeating one term or each a distinct term. Terms are created in
+ * setup as equal but separate objects, so only the batch's own allocation is
+ * measured. Run with -prof gc; once the dictionary has grown, distinct terms
+ * should allocate no more per statement than repeated ones.
+ *
+ * QuadBatch is package-private, so this lives in its package.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QuadBatchBenchmark {
+
+    private static final int BATCH_SIZE = 20000;
+
+    @Param({"false", "true"})
+    public boolean distinct;
+
+    private final QuadBatch batch = new QuadBatch();
+
+    private IRI context;
+    private IRI[] subjects;
+    private IRI[] predicates;
+    private Literal[] objects;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ValueFactory f = SimpleValueFactory.getInstance();
+        context = f.createIRI("http://marklogic.com/test/context1");
+        subjects = new IRI[BATCH_SIZE];
+        predicates = new IRI[BATCH_SIZE];
+        objects = new Literal[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            subjects[i] = f.createIRI("http://example.org/people/alice");
+            predicates[i] = f.createIRI("http://example.org/ontology/name");
+            objects[i] = f.createLiteral(distinct ? "Alice " + i : "Alice");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int add() {
+        batch.clear();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(subjects[i], predicates[i], objects[i], context);
+        }
+        return batch.termCount();
+    }
+}
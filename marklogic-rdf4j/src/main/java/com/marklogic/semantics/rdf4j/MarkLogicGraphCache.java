@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import org.eclipse.rdf4j.model.Resource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Cached set of graph uris of a MarkLogicRepository, backing getContextIDs().
+ *
+ * Loaded lazily from the server and kept up to date by writes made through
+ * this repository's connections; adds register new graphs and clears drop
+ * them. Writes touching unknown graphs (quad loads, SPARQL updates,
+ * rollbacks) force a reload. Graphs written by other clients show up once
+ * the cache is older than its max age. A max age of 0, the default,
+ * disables caching.
+ *
+ *
+ */
+public class MarkLogicGraphCache {
+
+    private volatile long maxAge;
+
+    // guarded by this
+    private final Set<String> graphs = new TreeSet<>();
+    private boolean loaded;
+    private long loadedAt;
+
+    /**
+     * getter for max age in milliseconds
+     *
+     * @return long
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * setter for max age in milliseconds after which graphs are reloaded, 0 disabling the cache
+     *
+     * @param maxAge
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Returns true if the cache is enabled.
+     *
+     * @return boolean
+     */
+    public boolean isEnabled() {
+        return maxAge > 0;
+    }
+
+    /**
+     * Returns a snapshot of cached graph uris, or null if they need loading.
+     *
+     * @return List
+     */
+    synchronized List<String> getGraphs() {
+        if (!loaded || System.currentTimeMillis() - loadedAt > maxAge) {
+            return null;
+        }
+        return new ArrayList<>(graphs);
+    }
+
+    /**
+     * Replaces cached graph uris with those loaded from the server.
+     *
+     * @param serverGraphs
+     */
+    synchronized void load(Collection<String> serverGraphs) {
+        graphs.clear();
+        graphs.addAll(serverGraphs);
+        loaded = true;
+        loadedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Records triples added to contexts, none meaning the default graph.
+     *
+     * @param contexts
+     */
+    public synchronized void added(Resource... contexts) {
+        for (String graph : MarkLogicRepositoryStatistics.toGraphs(contexts)) {
+            graphs.add(graph);
+        }
+    }
+
+    /**
+     * Records contexts cleared, none meaning the default graph.
+     *
+     * @param contexts
+     */
+    public synchronized void cleared(Resource... contexts) {
+        for (String graph : MarkLogicRepositoryStatistics.toGraphs(contexts)) {
+            graphs.remove(graph);
+        }
+    }
+
+    /**
+     * Records all graphs cleared.
+     */
+    public synchronized void clearedAll() {
+        graphs.clear();
+    }
+
+    /**
+     * Forces a reload on next access.
+     */
+    public synchronized void invalidate() {
+        loaded = false;
+    }
+}
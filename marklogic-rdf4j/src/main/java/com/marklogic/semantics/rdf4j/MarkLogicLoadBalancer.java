@@ -0,0 +1,379 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.MarkLogicServerException;
+import com.marklogic.client.semantics.SPARQLQueryManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Spreads read queries of a MarkLogicRepository over a pool of hosts, one
+ * DatabaseClient per host: the e-nodes of a cluster, or read replicas on
+ * their own app servers or databases.
+ *
+ * Only queries outside of transactions are balanced; transactions, and all
+ * writes, stay on the repository's own client, which may or may not be part
+ * of the pool. A host failing with a lost connection or a 503 response is
+ * taken out of rotation and the query is tried on the next host. Hosts out
+ * of rotation are probed every health check interval and return once they
+ * answer.
+ *
+ *
+ */
+public class MarkLogicLoadBalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicLoadBalancer.class);
+
+    public enum Strategy { ROUND_ROBIN, LEAST_OUTSTANDING }
+
+    private static final long DEFAULT_HEALTH_CHECK_INTERVAL = 5000;
+
+    private static final String HEALTH_CHECK_QUERY = "ASK {}";
+
+    private final List<Host> hosts;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile Strategy strategy = Strategy.ROUND_ROBIN;
+
+    private long healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "marklogic-health-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ScheduledFuture<?> healthCheck;
+
+    /**
+     * Constructor
+     *
+     * @param databaseClients one per host
+     */
+    public MarkLogicLoadBalancer(List<DatabaseClient> databaseClients) {
+        if (databaseClients.isEmpty()) {
+            throw new IllegalArgumentException("At least one host required.");
+        }
+        List<Host> list = new ArrayList<>();
+        for (DatabaseClient databaseClient : databaseClients) {
+            list.add(new Host(databaseClient));
+        }
+        this.hosts = Collections.unmodifiableList(list);
+        scheduleHealthCheck();
+    }
+
+    /**
+     * getter for strategy
+     *
+     * @return Strategy
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * setter for strategy, ROUND_ROBIN (default) or LEAST_OUTSTANDING
+     *
+     * @param strategy
+     */
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * getter for health check interval in milliseconds
+     *
+     * @return long
+     */
+    public synchronized long getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    /**
+     * setter for interval in milliseconds between probes of hosts out of rotation
+     *
+     * @param healthCheckInterval
+     */
+    public synchronized void setHealthCheckInterval(long healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+        scheduleHealthCheck();
+    }
+
+    /**
+     * Returns hosts with their metrics.
+     *
+     * @return List
+     */
+    public List<Host> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Runs a read query on a host chosen by the strategy, failing over to
+     * the other hosts when the chosen one is unavailable.
+     *
+     * @param request given the host's DatabaseClient and SPARQLQueryManager
+     * @param <T>
+     * @return T
+     */
+    public <T> T execute(BiFunction<DatabaseClient, SPARQLQueryManager, T> request) {
+        return execute(request, (host, result) -> {
+            host.outstanding.decrementAndGet();
+            return result;
+        });
+    }
+
+    /**
+     * Runs a read query returning a result stream, as execute. The query
+     * stays outstanding on its host until the stream is closed, as results
+     * are read from the host until then.
+     *
+     * @param request given the host's DatabaseClient and SPARQLQueryManager
+     * @return InputStream
+     */
+    public InputStream executeStreaming(BiFunction<DatabaseClient, SPARQLQueryManager, InputStream> request) {
+        return execute(request, (host, result) -> {
+            if (result == null) {
+                host.outstanding.decrementAndGet();
+                return null;
+            }
+            return new ResultStream(result, host);
+        });
+    }
+
+    // completed is handed each successful result, and ends the query being outstanding on its host
+    private <T> T execute(BiFunction<DatabaseClient, SPARQLQueryManager, T> request, BiFunction<Host, T, T> completed) {
+        List<Host> tried = new ArrayList<>();
+        RuntimeException failure = null;
+        Host host;
+        while ((host = select(tried)) != null) {
+            tried.add(host);
+            host.outstanding.incrementAndGet();
+            host.requests.incrementAndGet();
+            T result;
+            try {
+                result = request.apply(host.databaseClient, host.sparqlManager);
+            } catch (RuntimeException e) {
+                host.outstanding.decrementAndGet();
+                if (!isUnavailable(e)) {
+                    throw e;
+                }
+                logger.warn("MarkLogic host {}:{} unavailable, failing over: {}", host.getHost(), host.getPort(), e.getMessage());
+                host.failures.incrementAndGet();
+                host.healthy = false;
+                failure = e;
+                continue;
+            }
+            return completed.apply(host, result);
+        }
+        throw failure;
+    }
+
+    /**
+     * Stops health checks and releases DatabaseClients of all hosts but the
+     * one shared with the repository's client, released by its owner.
+     *
+     * @param shared
+     */
+    public synchronized void shutdown(DatabaseClient shared) {
+        healthChecker.shutdownNow();
+        for (Host host : hosts) {
+            if (host.databaseClient == shared) {
+                continue;
+            }
+            try {
+                host.databaseClient.release();
+            } catch (Exception e) {
+                logger.info("Failed releasing DB client", e);
+            }
+        }
+    }
+
+    /**
+     * Picks the next host not yet tried, preferring hosts in rotation. When
+     * none is in rotation every host gets a try.
+     *
+     * @param tried
+     * @return Host or null once all have been tried
+     */
+    private Host select(List<Host> tried) {
+        List<Host> candidates = new ArrayList<>();
+        for (Host host : hosts) {
+            if (host.healthy && !tried.contains(host)) {
+                candidates.add(host);
+            }
+        }
+        if (candidates.isEmpty()) {
+            for (Host host : hosts) {
+                if (!tried.contains(host)) {
+                    candidates.add(host);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), candidates.size());
+        if (strategy == Strategy.ROUND_ROBIN) {
+            return candidates.get(start);
+        }
+        Host least = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            Host host = candidates.get((start + i) % candidates.size());
+            if (least == null || host.outstanding.get() < least.outstanding.get()) {
+                least = host;
+            }
+        }
+        return least;
+    }
+
+    private static boolean isUnavailable(RuntimeException e) {
+        return e instanceof MarkLogicIOException
+                || (e instanceof MarkLogicServerException && ((MarkLogicServerException) e).getServerStatusCode() == 503);
+    }
+
+    private synchronized void scheduleHealthCheck() {
+        if (healthCheck != null) {
+            healthCheck.cancel(false);
+        }
+        if (!healthChecker.isShutdown()) {
+            healthCheck = healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckInterval, healthCheckInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void checkHealth() {
+        for (Host host : hosts) {
+            if (!host.healthy) {
+                try {
+                    host.sparqlManager.executeAsk(host.sparqlManager.newQueryDefinition(HEALTH_CHECK_QUERY), null);
+                    host.healthy = true;
+                    logger.info("MarkLogic host {}:{} back in rotation", host.getHost(), host.getPort());
+                } catch (RuntimeException e) {
+                    logger.debug("MarkLogic host {}:{} still unavailable: {}", host.getHost(), host.getPort(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * A result stream keeping its query outstanding on host until closed.
+     */
+    private static class ResultStream extends FilterInputStream {
+
+        private final Host host;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        ResultStream(InputStream in, Host host) {
+            super(in);
+            this.host = host;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                host.outstanding.decrementAndGet();
+            }
+            super.close();
+        }
+    }
+
+    /**
+     * A host of the cluster and its metrics.
+     */
+    public static class Host {
+
+        private final DatabaseClient databaseClient;
+        private final SPARQLQueryManager sparqlManager;
+
+        private volatile boolean healthy = true;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+
+        Host(DatabaseClient databaseClient) {
+            this.databaseClient = databaseClient;
+            this.sparqlManager = databaseClient.newSPARQLQueryManager();
+        }
+
+        public String getHost() {
+            return databaseClient.getHost();
+        }
+
+        public int getPort() {
+            return databaseClient.getPort();
+        }
+
+        /**
+         * Returns false while the host is out of rotation.
+         *
+         * @return boolean
+         */
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /**
+         * Returns the number of queries in flight on this host.
+         *
+         * @return int
+         */
+        public int getOutstandingRequests() {
+            return outstanding.get();
+        }
+
+        /**
+         * Returns the number of queries sent to this host.
+         *
+         * @return long
+         */
+        public long getRequestCount() {
+            return requests.get();
+        }
+
+        /**
+         * Returns the number of queries which found this host unavailable.
+         *
+         * @return long
+         */
+        public long getFailureCount() {
+            return failures.get();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+/**
+ * Receives measurements of requests made by a MarkLogicRepository, to be
+ * forwarded to a metrics library such as Micrometer or Dropwizard Metrics.
+ *
+ * Every method defaults to doing nothing, so implementations only override
+ * what they record. Methods are called on request, parser and timer threads
+ * and must not block. Measurements carry the operation they belong to,
+ * suitable as a tag.
+ *
+ *
+ */
+public interface MarkLogicMetrics {
+
+    /**
+     * Records nothing, the default.
+     */
+    MarkLogicMetrics NOOP = new MarkLogicMetrics() {};
+
+    /**
+     * Operations measured, tagged by their lower case name.
+     */
+    enum Operation {
+        SELECT, CONSTRUCT, ASK, UPDATE, INSERT_DATA, DELETE_DATA, ADD, LOAD, REMOVE, CLEAR;
+
+        /**
+         * Returns the lower case name, for use as a tag.
+         *
+         * @return String
+         */
+        public String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Records a request to the server, timed until its response started,
+     * including retries and failover.
+     *
+     * @param operation
+     * @param nanos
+     * @param failed
+     */
+    default void requestCompleted(Operation operation, long nanos, boolean failed) {}
+
+    /**
+     * Records bytes of queries and data sent to the server.
+     *
+     * @param operation
+     * @param bytes
+     */
+    default void bytesSent(Operation operation, long bytes) {}
+
+    /**
+     * Records a query result parsed in the background, once the response has been read.
+     *
+     * @param operation SELECT or CONSTRUCT
+     * @param results solutions or statements parsed
+     * @param bytesReceived
+     * @param nanos
+     */
+    default void resultParsed(Operation operation, long results, long bytesReceived, long nanos) {}
+
+    /**
+     * Records the number of parsed results waiting for the consumer, sampled as results are queued.
+     *
+     * @param operation SELECT or CONSTRUCT
+     * @param depth
+     */
+    default void resultQueueDepth(Operation operation, int depth) {}
+
+    /**
+     * Records a flush of a write cache, delete cache or transaction buffer.
+     *
+     * @param operation INSERT_DATA or DELETE_DATA
+     * @param statements
+     * @param nanos
+     * @param failed
+     */
+    default void cacheFlushed(Operation operation, long statements, long nanos, boolean failed) {}
+
+    /**
+     * Records batch size and flush interval of a cache after a
+     * MarkLogicWriteCacheTuner adjusted them.
+     *
+     * @param operation INSERT_DATA or DELETE_DATA
+     * @param cacheSize statements per batch
+     * @param cacheMillis flush interval
+     */
+    default void writeCacheTuned(Operation operation, long cacheSize, long cacheMillis) {}
+
+    /**
+     * Records the write cache check made before a query.
+     *
+     * @param consistency read consistency in effect
+     * @param flushed true if cached writes were flushed first
+     */
+    default void readSynced(MarkLogicReadConsistency consistency, boolean flushed) {}
+
+    /**
+     * Records a retry of a request which failed with a transient error.
+     *
+     * @param attempt the attempt which failed
+     */
+    default void retried(int attempt) {}
+
+    /**
+     * Records a request which still failed with a transient error on its last attempt.
+     */
+    default void gaveUp() {}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+
+/**
+ * Receives traces of SPARQL queries and updates evaluated through
+ * connections of a MarkLogicRepository, phase by phase.
+ *
+ * Phases of a query are reported in order as they complete: PREPARE and
+ * FIRST_BYTE on the calling thread, STREAM and PARSE for SELECT and CONSTRUCT
+ * on the thread parsing the result in the background. queryCompleted follows
+ * the last phase, or the failure of the request. Listeners must not block;
+ * exceptions they throw are logged and ignored.
+ *
+ *
+ */
+public interface MarkLogicQueryListener {
+
+    /**
+     * Called once a phase of the query has completed.
+     *
+     * @param trace
+     * @param phase
+     * @param nanos time spent in the phase
+     */
+    default void phaseCompleted(MarkLogicQueryTrace trace, MarkLogicQueryTrace.Phase phase, long nanos) {}
+
+    /**
+     * Called once the query has completed or failed.
+     *
+     * @param trace
+     */
+    default void queryCompleted(MarkLogicQueryTrace trace) {}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timing breakdown of one query or update, built up by MarkLogicClient as
+ * the request progresses and passed to each MarkLogicQueryListener.
+ *
+ * PREPARE covers building the SPARQLQueryDefinition with its bindings,
+ * FIRST_BYTE sending the request until the response starts (the whole
+ * request for ASK and updates), STREAM blocking on the response body and
+ * PARSE the rest of background result parsing.
+ *
+ *
+ */
+public class MarkLogicQueryTrace {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicQueryTrace.class);
+
+    public enum Phase { PREPARE, FIRST_BYTE, STREAM, PARSE }
+
+    private final Operation operation;
+
+    private final List<MarkLogicQueryListener> listeners;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<Phase, Long> phases = new EnumMap<>(Phase.class);
+
+    private long mark = startNanos;
+
+    private long totalNanos = -1;
+
+    private String query;
+
+    private long results = -1;
+
+    private long bytesReceived = -1;
+
+    private Throwable failure;
+
+    /**
+     * Starts a trace, timing PREPARE from now.
+     *
+     * @param operation
+     * @param listeners
+     */
+    public MarkLogicQueryTrace(Operation operation, List<MarkLogicQueryListener> listeners) {
+        this.operation = operation;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Ends PREPARE, once the query is built.
+     *
+     * @param query
+     */
+    public synchronized void prepared(String query) {
+        this.query = query;
+        phase(Phase.PREPARE);
+    }
+
+    /**
+     * Ends FIRST_BYTE, once the response has started.
+     */
+    public synchronized void responded() {
+        phase(Phase.FIRST_BYTE);
+    }
+
+    /**
+     * Ends STREAM and PARSE once a background result has been parsed, then completes the trace.
+     *
+     * @param results solutions or statements parsed
+     * @param bytesReceived
+     * @param streamNanos time spent reading the response body
+     * @param parseNanos total time spent parsing, including streamNanos
+     */
+    public void received(long results, long bytesReceived, long streamNanos, long parseNanos) {
+        synchronized (this) {
+            this.results = results;
+            this.bytesReceived = bytesReceived;
+            phase(Phase.STREAM, streamNanos);
+            phase(Phase.PARSE, Math.max(0, parseNanos - streamNanos));
+        }
+        completed(null);
+    }
+
+    /**
+     * Completes the trace, notifying listeners.
+     *
+     * @param failure null unless the request failed
+     */
+    public void completed(Throwable failure) {
+        synchronized (this) {
+            if (totalNanos >= 0) {
+                return;
+            }
+            this.failure = failure;
+            this.totalNanos = System.nanoTime() - startNanos;
+        }
+        for (MarkLogicQueryListener listener : listeners) {
+            try {
+                listener.queryCompleted(this);
+            } catch (RuntimeException e) {
+                logger.warn("Query listener failed", e);
+            }
+        }
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the query sent, with bindings applied.
+     *
+     * @return String
+     */
+    public synchronized String getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns the start time, in milliseconds since the epoch.
+     *
+     * @return long
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns nanoseconds spent in phase, or -1 when it was not reached.
+     *
+     * @param phase
+     * @return long
+     */
+    public synchronized long getPhaseNanos(Phase phase) {
+        Long nanos = phases.get(phase);
+        return nanos != null ? nanos : -1;
+    }
+
+    /**
+     * Returns nanoseconds from start to completion, or -1 before completion.
+     *
+     * @return long
+     */
+    public synchronized long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Returns solutions or statements parsed, or -1 for ASK and updates.
+     *
+     * @return long
+     */
+    public synchronized long getResults() {
+        return results;
+    }
+
+    /**
+     * Returns bytes of the response body read, or -1 for ASK and updates.
+     *
+     * @return long
+     */
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Returns the failure of the request, null if it succeeded.
+     *
+     * @return Throwable
+     */
+    public synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder(operation.tag());
+        sb.append(" total=").append(totalNanos / 1000000).append("ms");
+        for (Map.Entry<Phase, Long> phase : phases.entrySet()) {
+            sb.append(' ').append(phase.getKey().name().toLowerCase()).append('=').append(phase.getValue() / 1000000).append("ms");
+        }
+        if (results >= 0) {
+            sb.append(" results=").append(results).append(" bytes=").append(bytesReceived);
+        }
+        if (failure != null) {
+            sb.append(" failed=").append(failure);
+        }
+        return sb.toString();
+    }
+
+    private void phase(Phase phase) {
+        long now = System.nanoTime();
+        phase(phase, now - mark);
+        mark = now;
+    }
+
+    private void phase(Phase phase, long nanos) {
+        phases.put(phase, nanos);
+        for (MarkLogicQueryListener listener : listeners) {
+            try {
+                listener.phaseCompleted(this, phase, nanos);
+            } catch (RuntimeException e) {
+                logger.warn("Query listener failed", e);
+            }
+        }
+    }
+}
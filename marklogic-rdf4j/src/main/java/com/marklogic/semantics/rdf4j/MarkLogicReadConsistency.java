@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+
+/**
+ * How reads of a MarkLogicRepository treat writes still waiting in a
+ * connection's write and delete caches.
+ *
+ *
+ */
+public enum MarkLogicReadConsistency {
+
+    /**
+     * Flush both caches before every query, the default.
+     */
+    STRONG,
+
+    /**
+     * Flush only when cached quads touch a graph the query may read: those
+     * named by its FROM and FROM NAMED clauses, or any graph without them.
+     */
+    GRAPH_AWARE,
+
+    /**
+     * Never flush before a query; cached writes become visible once the
+     * cache timer flushes them.
+     */
+    EVENTUAL
+}
@@ -24,6 +24,7 @@ import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClientDependent;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.TripleJournal;
 import com.marklogic.semantics.rdf4j.utils.Util;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
@@ -35,6 +36,16 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -48,6 +59,8 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
 
     private static final Logger logger = LoggerFactory.getLogger(MarkLogicRepository.class);
 
+    private static final int DEFAULT_ASYNC_THREADS = 16;
+
     // MarkLogicClient vars
     private MarkLogicClient client;
     private String host;
@@ -60,6 +73,36 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
 
     private boolean quadMode;
 
+    private int defaultMaxExecutionTime;
+
+    // runs evaluateAsync/executeAsync requests from all connections
+    private Executor asyncExecutor;
+    private ThreadPoolExecutor ownedAsyncExecutor;
+    private int asyncThreads = DEFAULT_ASYNC_THREADS;
+
+    private final MarkLogicRepositoryStatistics statistics = new MarkLogicRepositoryStatistics();
+
+    private final MarkLogicGraphCache graphCache = new MarkLogicGraphCache();
+
+    private final MarkLogicRetryPolicy retryPolicy = new MarkLogicRetryPolicy();
+
+    private volatile MarkLogicMetrics metrics = MarkLogicMetrics.NOOP;
+
+    private final List<MarkLogicQueryListener> queryListeners = new CopyOnWriteArrayList<>();
+
+    private volatile MarkLogicReadConsistency readConsistency = MarkLogicReadConsistency.STRONG;
+
+    // null unless write cache adds are journaled
+    private volatile File writeJournal;
+
+    // null unless write cache batches are tuned
+    private volatile MarkLogicWriteCacheTuner writeCacheTuner;
+
+    private volatile int flushParallelism = 1;
+
+    // null unless constructed with several hosts
+    private MarkLogicLoadBalancer loadBalancer;
+
     private ValueFactory f;
 
     private DatabaseClient databaseClient;
@@ -73,9 +116,7 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
      * @param connectionString
      */
     public MarkLogicRepository(URL connectionString){
-        String[] split = connectionString.getAuthority().split("@");
-        String creds = split[0];
-        String cred[] = creds.split(":");
+        String[] cred = credentials(connectionString);
         this.f = SimpleValueFactory.getInstance();
         this.quadMode = true;
         this.host = connectionString.getHost();
@@ -83,6 +124,7 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         this.user = cred[0];
         this.password = cred[1];
         this.auth = "DIGEST";
+        this.database = database(connectionString);
         this.client = getMarkLogicClient();
     }
 
@@ -178,7 +220,106 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         this.securityContext = databaseClient.getSecurityContext();
         this.client = new MarkLogicClient(databaseClient);
     }
-    
+
+    /**
+     * Constructor initialized with MarkLogic Java Client Api DatabaseClients, one per host of a cluster.
+     * Reads outside of transactions are spread over all hosts, transactions and writes go to the first.
+     *
+     * @param databaseClients Java Client API DatabaseClients. Can be made with com.marklogic.client.DatabaseClientFactory
+     */
+    public MarkLogicRepository(List<DatabaseClient> databaseClients) {
+        this(databaseClients.get(0), databaseClients);
+    }
+
+    /**
+     * Constructor initialized with separate MarkLogic Java Client Api DatabaseClients for writes and reads,
+     * which may target different hosts, app servers or databases.
+     * Reads outside of transactions are spread over readClients, transactions and writes go to databaseClient.
+     *
+     * @param databaseClient Java Client API DatabaseClient for transactions and writes
+     * @param readClients Java Client API DatabaseClients, one per read host
+     */
+    public MarkLogicRepository(DatabaseClient databaseClient, List<DatabaseClient> readClients) {
+        this(databaseClient);
+        this.loadBalancer = new MarkLogicLoadBalancer(readClients);
+    }
+
+    /**
+     * Constructor initialized with separate connection URLs for reads and writes.
+     * Reads outside of transactions go to queryEndpoint, transactions and writes to updateEndpoint.
+     *
+     * @param queryEndpoint
+     * @param updateEndpoint
+     */
+    public MarkLogicRepository(URL queryEndpoint, URL updateEndpoint) {
+        this(updateEndpoint);
+        if (!sameServer(queryEndpoint, updateEndpoint)) {
+            String[] cred = credentials(queryEndpoint);
+            DatabaseClient readClient = util.getClientBasedOnAuth(queryEndpoint.getHost(), queryEndpoint.getPort(), cred[0], cred[1], database(queryEndpoint), "DIGEST");
+            this.loadBalancer = new MarkLogicLoadBalancer(Collections.singletonList(readClient));
+        }
+    }
+
+    /**
+     *
+     * Constructor initialized with the hosts of a MarkLogic cluster.
+     * Reads outside of transactions are spread over all hosts, transactions and writes go to the first.
+     *
+     * @param hosts the hosts with the REST server
+     * @param port the port for the REST server
+     * @param database the MarkLogic database to be used.
+     * @param securityContext a Java Client API SecurityContext. Can be made with com.marklogic.client.DatabaseClientFactory
+     */
+    public MarkLogicRepository(List<String> hosts, int port, String database, DatabaseClientFactory.SecurityContext securityContext) {
+        this(newDatabaseClients(hosts, port, database, securityContext));
+    }
+
+    /**
+     * Returns the database named by the database parameter of a connection URL, or null.
+     *
+     * @param connectionString
+     * @return String
+     */
+    private static String database(URL connectionString) {
+        if (connectionString.getQuery() != null) {
+            for (String param : connectionString.getQuery().split("&")) {
+                if (param.startsWith("database=")) {
+                    return param.substring("database=".length());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns user and password of a connection URL, the password may contain ':'.
+     *
+     * @param connectionString
+     * @return String[]
+     */
+    private static String[] credentials(URL connectionString) {
+        String userInfo = connectionString.getUserInfo();
+        String[] cred = userInfo != null ? userInfo.split(":", 2) : new String[0];
+        if (cred.length < 2) {
+            throw new IllegalArgumentException("Connection URL for " + connectionString.getHost() + ":" + connectionString.getPort()
+                    + " must carry user:password.");
+        }
+        return cred;
+    }
+
+    private static boolean sameServer(URL a, URL b) {
+        return Util.sameHost(a.getHost(), b.getHost()) && a.getPort() == b.getPort()
+                && Objects.equals(a.getUserInfo(), b.getUserInfo()) && Objects.equals(database(a), database(b));
+    }
+
+    private static List<DatabaseClient> newDatabaseClients(List<String> hosts, int port, String database, DatabaseClientFactory.SecurityContext securityContext) {
+        List<DatabaseClient> databaseClients = new ArrayList<>();
+        for (String host : hosts) {
+            databaseClients.add(Util.getInstance().getClientBasedOnAuth(host, port, database, securityContext));
+        }
+        return databaseClients;
+    }
+
     /**
      * gets the Valuefactory used for creating URIs, blank nodes, literals and statements.
      *
@@ -220,6 +361,9 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
                 this.client = new MarkLogicClient(databaseClient);
             }
         }
+        if (writeJournal != null) {
+            TripleJournal.replay(client, writeJournal);
+        }
     }
 
     /**
@@ -231,6 +375,16 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
     @Override
     @Deprecated
     protected void shutDownInternal() throws RepositoryException {
+        synchronized (this) {
+            if (ownedAsyncExecutor != null) {
+                ownedAsyncExecutor.shutdown();
+                ownedAsyncExecutor = null;
+            }
+        }
+        if (loadBalancer != null) {
+            loadBalancer.shutdown(databaseClient);
+        }
+        client.stopTimer();
         client.release();
     }
 
@@ -272,10 +426,10 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
      * Returns a MarkLogicConnection object which is the entry point to
      * performing all queries.
      *
-     * It is best practice to reuse a single connection to a
-     * single MarkLogic database to take advantage of connection
-     * pooling capabilities built into java api client (which is a
-     * dependency within marklogic-rdf4j).
+     * Connections share this repository's java api client, and its
+     * connection pool, but each has its own transaction, rulesets, graph
+     * permissions, constraining query and optimize level, so many
+     * connections can run transactions in parallel.
      *
      * @return MarkLogicRepositoryConnection
      * @throws RepositoryException
@@ -286,7 +440,15 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         if (!isInitialized()) {
             throw new RepositoryException("MarkLogicRepository not initialized.");
         }
-        return new MarkLogicRepositoryConnection(this, getMarkLogicClient(), quadMode);
+        MarkLogicClient shared;
+        synchronized (this) {
+            if (this.client == null) {
+                this.client = getMarkLogicClient();
+            }
+            shared = this.client;
+            shared.getClient().setLoadBalancer(loadBalancer);
+        }
+        return new MarkLogicRepositoryConnection(this, new MarkLogicClient(shared.getClient()), quadMode);
     }
 
     //TODO: Check and refactor.
@@ -320,6 +482,254 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         this.client = client;
     }
 
+    /**
+     * Returns the max execution time, in seconds, applied to queries prepared
+     * on connections from this repository (0 means no limit).
+     *
+     * @return int
+     */
+    public int getDefaultMaxExecutionTime() {
+        return defaultMaxExecutionTime;
+    }
+
+    /**
+     * Sets the max execution time, in seconds, applied to queries prepared
+     * on connections from this repository (0 means no limit).
+     *
+     * @param defaultMaxExecutionTime
+     */
+    public void setDefaultMaxExecutionTime(int defaultMaxExecutionTime) {
+        this.defaultMaxExecutionTime = defaultMaxExecutionTime;
+    }
+
+    /**
+     * Returns executor running asynchronous queries and updates, by default a
+     * fixed pool shared by all connections of this repository.
+     *
+     * @return Executor
+     */
+    public synchronized Executor getAsyncExecutor() {
+        if (asyncExecutor != null) {
+            return asyncExecutor;
+        }
+        if (ownedAsyncExecutor == null) {
+            AtomicInteger count = new AtomicInteger();
+            ownedAsyncExecutor = new ThreadPoolExecutor(asyncThreads, asyncThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "marklogic-async-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return ownedAsyncExecutor;
+    }
+
+    /**
+     * Sets executor running asynchronous queries and updates. It is not shut
+     * down with the repository.
+     *
+     * @param asyncExecutor
+     */
+    public synchronized void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Sets the size of the default async executor, which bounds the number of
+     * asynchronous requests in flight. The pool is resized in place, so open
+     * connections keep using it.
+     *
+     * @param asyncThreads
+     */
+    public synchronized void setAsyncThreads(int asyncThreads) {
+        if (asyncThreads < 1) {
+            throw new IllegalArgumentException("asyncThreads must be positive");
+        }
+        this.asyncThreads = asyncThreads;
+        if (ownedAsyncExecutor != null) {
+            // core size may never exceed max size, so the order depends on the direction
+            if (asyncThreads > ownedAsyncExecutor.getMaximumPoolSize()) {
+                ownedAsyncExecutor.setMaximumPoolSize(asyncThreads);
+                ownedAsyncExecutor.setCorePoolSize(asyncThreads);
+            } else {
+                ownedAsyncExecutor.setCorePoolSize(asyncThreads);
+                ownedAsyncExecutor.setMaximumPoolSize(asyncThreads);
+            }
+        }
+    }
+
+    /**
+     * Returns per-graph triple counts shared by connections of this repository,
+     * which serve size queries in APPROXIMATE mode.
+     *
+     * @return MarkLogicRepositoryStatistics
+     */
+    public MarkLogicRepositoryStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the graph uri cache shared by connections of this repository,
+     * disabled until given a max age.
+     *
+     * @return MarkLogicGraphCache
+     */
+    public MarkLogicGraphCache getGraphCache() {
+        return graphCache;
+    }
+
+    /**
+     * Returns the retry policy shared by connections of this repository,
+     * including its retry and give-up counters.
+     *
+     * @return MarkLogicRetryPolicy
+     */
+    public MarkLogicRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * getter for metrics
+     *
+     * @return MarkLogicMetrics
+     */
+    public MarkLogicMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets metrics receiving request latencies, payload sizes, cache flushes,
+     * retries and result parsing of connections opened afterwards.
+     *
+     * @param metrics null to stop recording
+     */
+    public void setMetrics(MarkLogicMetrics metrics) {
+        this.metrics = metrics != null ? metrics : MarkLogicMetrics.NOOP;
+        retryPolicy.setMetrics(this.metrics);
+    }
+
+    /**
+     * getter for read consistency
+     *
+     * @return MarkLogicReadConsistency
+     */
+    public MarkLogicReadConsistency getReadConsistency() {
+        return readConsistency;
+    }
+
+    /**
+     * Sets how queries of connections opened afterwards treat writes waiting
+     * in their write and delete caches: STRONG (default), GRAPH_AWARE or EVENTUAL.
+     * Updates always flush the caches first.
+     *
+     * @param readConsistency
+     */
+    public void setReadConsistency(MarkLogicReadConsistency readConsistency) {
+        this.readConsistency = readConsistency != null ? readConsistency : MarkLogicReadConsistency.STRONG;
+    }
+
+    /**
+     * getter for write journal directory
+     *
+     * @return File
+     */
+    public File getWriteJournal() {
+        return writeJournal;
+    }
+
+    /**
+     * Journals adds made through the write caches of connections opened
+     * afterwards to files in directory, until the server acknowledges their
+     * flush. Set before initialize(), which replays journals left behind by a
+     * JVM that died with unflushed adds. The directory must not be shared
+     * with other processes.
+     *
+     * @param directory existing directory, null to disable journaling (default)
+     */
+    public void setWriteJournal(File directory) {
+        this.writeJournal = directory;
+    }
+
+    /**
+     * getter for write cache tuner
+     *
+     * @return MarkLogicWriteCacheTuner
+     */
+    public MarkLogicWriteCacheTuner getWriteCacheTuner() {
+        return writeCacheTuner;
+    }
+
+    /**
+     * Sets a tuner adjusting batch size and flush interval of the write and
+     * delete caches of connections opened afterwards from their flushes.
+     *
+     * @param writeCacheTuner null for fixed values (default)
+     */
+    public void setWriteCacheTuner(MarkLogicWriteCacheTuner writeCacheTuner) {
+        this.writeCacheTuner = writeCacheTuner;
+    }
+
+    /**
+     * getter for flush parallelism
+     *
+     * @return int
+     */
+    public int getFlushParallelism() {
+        return flushParallelism;
+    }
+
+    /**
+     * Splits large write and delete cache flushes of connections opened
+     * afterwards into up to flushParallelism independent updates, grouped by
+     * graph where possible and sent concurrently on the async executor.
+     * Flushes inside transactions stay a single request.
+     *
+     * @param flushParallelism 1 (default) for single request flushes
+     */
+    public void setFlushParallelism(int flushParallelism) {
+        if (flushParallelism < 1) {
+            throw new IllegalArgumentException("flushParallelism must be at least 1, was " + flushParallelism);
+        }
+        this.flushParallelism = flushParallelism;
+    }
+
+    /**
+     * Adds a listener receiving traces of queries and updates of all
+     * connections, such as a MarkLogicSlowQueryLogger.
+     *
+     * @param listener
+     */
+    public void addQueryListener(MarkLogicQueryListener listener) {
+        queryListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added by addQueryListener.
+     *
+     * @param listener
+     */
+    public void removeQueryListener(MarkLogicQueryListener listener) {
+        queryListeners.remove(listener);
+    }
+
+    /**
+     * Returns the live list of query listeners, shared with connections.
+     *
+     * @return List
+     */
+    List<MarkLogicQueryListener> getQueryListeners() {
+        return queryListeners;
+    }
+
+    /**
+     * Returns the load balancer spreading reads over cluster hosts, with
+     * per-host metrics, or null if this repository was given a single host.
+     *
+     * @return MarkLogicLoadBalancer
+     */
+    public MarkLogicLoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
     /**
      * Returns if repository is in quadmode or not.
      *
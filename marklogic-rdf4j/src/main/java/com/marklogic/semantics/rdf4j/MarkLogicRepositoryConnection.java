@@ -26,7 +26,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.Transaction;
@@ -34,6 +40,7 @@ import com.marklogic.semantics.rdf4j.utils.Util;
 import org.eclipse.rdf4j.IsolationLevel;
 import org.eclipse.rdf4j.IsolationLevels;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
 import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
 import org.eclipse.rdf4j.common.iteration.EmptyIteration;
 import org.eclipse.rdf4j.common.iteration.ExceptionConvertingIteration;
@@ -101,6 +108,10 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
 
     private static final String COUNT_EVERYTHING = "SELECT (count(?s) as ?ct) where { GRAPH ?g { ?s ?p ?o } }";
 
+    private static final String ANYTHING = "ASK { GRAPH ?g { ?s ?p ?o } }";
+
+    private static final String COUNT_BY_GRAPH = "SELECT ?g (count(?s) as ?ct) where { GRAPH ?g { ?s ?p ?o } } GROUP BY ?g";
+
     private static final String ALL_GRAPH_URIS = "SELECT ?g { GRAPH ?g {} filter (?g != IRI(\"http://marklogic.com/semantics#graphs\"))}";
 
     private static final String GET_STATEMENTS = "SELECT * {GRAPH ?ctx { ?s ?p ?o . }}";
@@ -112,6 +123,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     private GraphPermissions defaultGraphPerms;
     private SPARQLRuleset[] defaultRulesets;
     private QueryDefinition defaultQueryDef;
+    private int defaultMaxExecutionTime;
 
     private Util util = Util.getInstance();
 
@@ -127,7 +139,20 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         this.client = client;
         this.quadMode = true;
         this.defaultGraphPerms = client.emptyGraphPerms();
+        this.defaultMaxExecutionTime = repository.getDefaultMaxExecutionTime();
         client.setValueFactory(repository.getValueFactory());
+        client.setAsyncExecutor(repository.getAsyncExecutor());
+        client.setStatistics(repository.getStatistics());
+        client.setGraphCache(repository.getGraphCache());
+        client.setRetryPolicy(repository.getRetryPolicy());
+        client.setMetrics(repository.getMetrics());
+        client.setQueryListeners(repository.getQueryListeners());
+        client.setReadConsistency(repository.getReadConsistency());
+        client.setWriteJournal(repository.getWriteJournal());
+        client.setFlushParallelism(repository.getFlushParallelism());
+        if (repository.getWriteCacheTuner() != null) {
+            client.setWriteCacheTuner(repository.getWriteCacheTuner());
+        }
     }
 
     /**
@@ -152,7 +177,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
 
     /**
      * Releases the connection to the database. Ensures that open transactions
-     * are complete. Stops write cache timer.
+     * are complete. Stops write cache flushes.
      */
     @Override
     public void close()
@@ -297,7 +322,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     @Override
     public MarkLogicTupleQuery prepareTupleQuery(QueryLanguage queryLanguage, String queryString, String baseURI) throws RepositoryException, MalformedQueryException {
         if (QueryLanguage.SPARQL.equals(queryLanguage)) {
-            return new MarkLogicTupleQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets);
+            return withDefaults(new MarkLogicTupleQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets));
         }
         throw new UnsupportedQueryLanguageException("Unsupported query language " + queryLanguage.getName());
     }
@@ -358,7 +383,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
             throws RepositoryException, MalformedQueryException
     {
         if (QueryLanguage.SPARQL.equals(queryLanguage)) {
-            return new MarkLogicGraphQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets);
+            return withDefaults(new MarkLogicGraphQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets));
         }
         throw new UnsupportedQueryLanguageException("Unsupported query language " + queryLanguage.getName());
     }
@@ -417,7 +442,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     @Override
     public MarkLogicBooleanQuery prepareBooleanQuery(QueryLanguage queryLanguage, String queryString, String baseURI) throws RepositoryException, MalformedQueryException {
         if (QueryLanguage.SPARQL.equals(queryLanguage)) {
-            return new MarkLogicBooleanQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets);
+            return withDefaults(new MarkLogicBooleanQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets));
         }
         throw new UnsupportedQueryLanguageException("Unsupported query language " + queryLanguage.getName());
     }
@@ -476,7 +501,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     @Override
     public MarkLogicUpdateQuery prepareUpdate(QueryLanguage queryLanguage, String queryString, String baseURI) throws RepositoryException, MalformedQueryException {
         if (QueryLanguage.SPARQL.equals(queryLanguage)) {
-            return new MarkLogicUpdateQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets);
+            return withDefaults(new MarkLogicUpdateQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets));
         }
         throw new UnsupportedQueryLanguageException("Unsupported query language " + queryLanguage.getName());
     }
@@ -484,10 +509,40 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     /**
      * Returns list of graph names as Resource
      *
+     * Served from the repository graph cache when it is enabled and fresh.
+     *
      * @throws RepositoryException
      */
     @Override
     public RepositoryResult<Resource> getContextIDs() throws RepositoryException {
+        MarkLogicGraphCache graphCache = ((MarkLogicRepository) getRepository()).getGraphCache();
+        if (graphCache.isEnabled()) {
+            List<String> graphs = graphCache.getGraphs();
+            if (graphs == null) {
+                graphs = new ArrayList<>();
+                try (RepositoryResult<Resource> result = queryContextIDs()) {
+                    while (result.hasNext()) {
+                        graphs.add(result.next().stringValue());
+                    }
+                }
+                graphCache.load(graphs);
+            }
+            List<Resource> contextIDs = new ArrayList<>(graphs.size());
+            for (String graph : graphs) {
+                contextIDs.add(getValueFactory().createIRI(graph));
+            }
+            return new RepositoryResult<Resource>(new CloseableIteratorIteration<Resource, RepositoryException>(contextIDs.iterator()));
+        }
+        return queryContextIDs();
+    }
+
+    /**
+     * Queries graph uris from the server.
+     *
+     * @return RepositoryResult
+     * @throws RepositoryException
+     */
+    private RepositoryResult<Resource> queryContextIDs() throws RepositoryException {
         try{
             TupleQuery tupleQuery = prepareTupleQuery(QueryLanguage.SPARQL, ALL_GRAPH_URIS);
             TupleQueryResult result = tupleQuery.evaluate();
@@ -771,6 +826,10 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
      */
     @Override
     public long size() throws RepositoryException{
+        MarkLogicRepositoryStatistics statistics = getStatistics();
+        if (statistics.getMode() == MarkLogicRepositoryStatistics.Mode.APPROXIMATE) {
+            return statisticsSize(statistics.getRefreshInterval());
+        }
         try {
             MarkLogicTupleQuery tupleQuery = prepareTupleQuery(COUNT_EVERYTHING);
             tupleQuery.setIncludeInferred(false);
@@ -796,6 +855,10 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     @Override
     public long size(Resource... contexts) throws RepositoryException {
     	verifyContextNotNull(contexts);
+        MarkLogicRepositoryStatistics statistics = getStatistics();
+        if (statistics.getMode() == MarkLogicRepositoryStatistics.Mode.APPROXIMATE) {
+            return statisticsSize(statistics.getRefreshInterval(), MarkLogicRepositoryStatistics.toGraphs(contexts));
+        }
         try {
             StringBuilder sb = new StringBuilder();
             sb.append("SELECT (count(?s) as ?ct) where { GRAPH ?g { ?s ?p ?o }");
@@ -861,12 +924,61 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     /**
      * Returns true or false if the repository is empty or not.
      *
+     * Probes for a single triple rather than counting them all.
+     *
      * @return boolean
      * @throws RepositoryException
      */
     @Override
     public boolean isEmpty() throws RepositoryException {
-        return size() == 0;
+        return !exists(ANYTHING);
+    }
+
+    /**
+     * Returns true or false if the supplied contexts are empty or not,
+     * null meaning the default graph. With no contexts, checks the whole repository.
+     *
+     * @param contexts Var-arg for specified contexts.
+     * @return boolean
+     * @throws RepositoryException
+     */
+    public boolean isEmpty(Resource... contexts) throws RepositoryException {
+        verifyContextNotNull(contexts);
+        if (contexts.length == 0) {
+            return isEmpty();
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("ASK { GRAPH ?g { ?s ?p ?o } filter (?g = (");
+        boolean first = true;
+        for (Resource context : contexts) {
+            if (first) {
+                first = false;
+            }
+            else {
+                sb.append(",");
+            }
+            if (context == null) {
+                sb.append("IRI(\""+DEFAULT_GRAPH_URI+"\")");
+            } else {
+                sb.append("IRI(\"").append(context.toString()).append("\")");
+            }
+        }
+        sb.append(") ) }");
+        logger.debug(sb.toString());
+        return !exists(sb.toString());
+    }
+
+    /**
+     * Returns the size of the repository from the repository statistics, reconciled
+     * with the server when older than maxAge milliseconds. Intended for monitoring
+     * and health checks which can tolerate a slightly stale value.
+     *
+     * @param maxAge maximum age in milliseconds of a reused count
+     * @return long
+     * @throws RepositoryException
+     */
+    public long cachedSize(long maxAge) throws RepositoryException {
+        return statisticsSize(maxAge);
     }
 
     @Override
@@ -1097,6 +1209,54 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
 	}
 
 
+    /**
+     * Add triples via inputstream without blocking the caller.
+     *
+     * @param in the input stream.
+     * @param baseURI the baseURI for the input stream.
+     * @param dataFormat the data format for the input stream.
+     * @param contexts Var-arg for specified context.
+     * @return CompletableFuture completed once the triples are sent
+     */
+    public CompletableFuture<Void> addAsync(InputStream in, String baseURI, RDFFormat dataFormat, Resource... contexts) {
+        return getClient().executeAsync(() -> {
+            try {
+                add(in, baseURI, dataFormat, contexts);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Add triple statements without blocking the caller.
+     *
+     * @param statements Statement to be added.
+     * @param contexts Var-arg for the specified contexts.
+     * @return CompletableFuture completed once the statements are added
+     */
+    public CompletableFuture<Void> addAsync(Iterable<? extends Statement> statements, Resource... contexts) {
+        return getClient().executeAsync(() -> {
+            add(statements, contexts);
+            return null;
+        });
+    }
+
+    /**
+     * Remove triple statements without blocking the caller.
+     *
+     * @param statements the statement to be removed.
+     * @param contexts Var-arg for the specified contexts.
+     * @return CompletableFuture completed once the statements are removed
+     */
+    public CompletableFuture<Void> removeAsync(Iterable<? extends Statement> statements, Resource... contexts) {
+        return getClient().executeAsync(() -> {
+            remove(statements, contexts);
+            return null;
+        });
+    }
+
     /**
      * Remove triple statement.
      *
@@ -1373,6 +1533,26 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         return this.client.getDefaultRulesets();
     }
 
+    /**
+     * Sets default max execution time, in seconds, to be used by all queries (0 means no limit).
+     *
+     * @param maxExecutionTime
+     */
+    @Override
+    public void setDefaultMaxExecutionTime(int maxExecutionTime) {
+        this.defaultMaxExecutionTime = maxExecutionTime;
+    }
+
+    /**
+     * Returns default max execution time, in seconds, to be used by all queries.
+     *
+     * @return int
+     */
+    @Override
+    public int getDefaultMaxExecutionTime() {
+        return this.defaultMaxExecutionTime;
+    }
+
 
     /**
      * Forces write cache to sync.
@@ -1386,8 +1566,8 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     /**
      * Customise write cache interval and cache size. 
      *
-     * @param initDelay - initial interval before write cache is checked
-     * @param delayCache - interval (ms) to check write cache
+     * @param initDelay - unused, write caches are flushed on a deadline armed by their first triple
+     * @param delayCache - max time (ms) triples wait in write cache
      * @param cacheSize - size (# triples) of write cache
      *
      */
@@ -1396,8 +1576,114 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         client.initTimer(initDelay, delayCache,cacheSize);
     }
 
+    /**
+     * Customise write cache size in bytes: the cache flushes when its
+     * estimated update reaches cacheBytes, or before an add would take it
+     * past, whichever of bytes, cache size or interval comes first.
+     *
+     * @param cacheBytes - estimated size (bytes) of write cache updates
+     *
+     */
+    @Override
+    public void configureWriteCacheBytes(long cacheBytes){
+        client.setWriteCacheBytes(cacheBytes);
+    }
+
+    /**
+     * Buffers adds and removes made inside transactions locally, shipping them
+     * as a few large requests on read or just before commit instead of through
+     * the write cache timer. Applies to transactions begun afterwards.
+     *
+     * @param enabled - buffer transactional writes
+     * @param memoryLimit - size (# triples) held in memory before spilling to disk
+     * @param batchSize - size (# triples) of each update request
+     *
+     */
+    @Override
+    public void configureTransactionBuffer(boolean enabled, long memoryLimit, long batchSize){
+        client.setTransactionBuffering(enabled, memoryLimit, batchSize);
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////////
     // private ////////////////////////////////////////////////////////////////////////////////////
+
+    private MarkLogicRepositoryStatistics getStatistics() {
+        return ((MarkLogicRepository) getRepository()).getStatistics();
+    }
+
+    /**
+     * Serves size from repository statistics, first reconciling them with a
+     * single grouped count when older than maxAge or invalidated by writes.
+     *
+     * @param maxAge
+     * @param graphs graph uris, none meaning all graphs
+     * @return long
+     * @throws RepositoryException
+     */
+    private long statisticsSize(long maxAge, String... graphs) throws RepositoryException {
+        MarkLogicRepositoryStatistics statistics = getStatistics();
+        if (statistics.isStale(maxAge, graphs)) {
+            statistics.reconcile(countByGraph());
+        }
+        return statistics.size(graphs);
+    }
+
+    /**
+     * Counts triples of every graph in a single query.
+     *
+     * @return Map of graph uri to triple count
+     * @throws RepositoryException
+     */
+    private Map<String, Long> countByGraph() throws RepositoryException {
+        try {
+            MarkLogicTupleQuery tupleQuery = prepareTupleQuery(COUNT_BY_GRAPH);
+            tupleQuery.setIncludeInferred(false);
+            tupleQuery.setRulesets((SPARQLRuleset)null);
+            tupleQuery.setConstrainingQueryDefinition((QueryDefinition)null);
+            Map<String, Long> counts = new HashMap<>();
+            try (TupleQueryResult qRes = tupleQuery.evaluate()) {
+                while (qRes.hasNext()) {
+                    BindingSet result = qRes.next();
+                    counts.put(result.getValue("g").stringValue(), ((Literal) result.getValue("ct")).longValue());
+                }
+            }
+            return counts;
+        } catch (QueryEvaluationException | MalformedQueryException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    /**
+     * Runs an existence probe without inference, rulesets or constraining query.
+     *
+     * @param queryString
+     * @return boolean
+     * @throws RepositoryException
+     */
+    private boolean exists(String queryString) throws RepositoryException {
+        try {
+            MarkLogicBooleanQuery query = prepareBooleanQuery(queryString);
+            query.setIncludeInferred(false);
+            query.setRulesets((SPARQLRuleset)null);
+            query.setConstrainingQueryDefinition((QueryDefinition)null);
+            return query.evaluate();
+        } catch (QueryEvaluationException | MalformedQueryException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    /**
+     * Applies connection defaults not handled by query constructors.
+     *
+     * @param query
+     * @return
+     */
+    private <Q extends MarkLogicQuery> Q withDefaults(Q query) {
+        if (defaultMaxExecutionTime > 0) {
+            query.setMaxExecutionTime(defaultMaxExecutionTime);
+        }
+        return query;
+    }
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
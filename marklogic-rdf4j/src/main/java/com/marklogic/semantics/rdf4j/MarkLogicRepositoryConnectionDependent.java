@@ -64,8 +64,15 @@ interface MarkLogicRepositoryConnectionDependent {
     void setDefaultRulesets(SPARQLRuleset... ruleset);
     SPARQLRuleset[] getDefaultRulesets();
 
+    void setDefaultMaxExecutionTime(int maxExecutionTime);
+    int getDefaultMaxExecutionTime();
+
     void sync() throws MarkLogicRdf4jException;
 
     void configureWriteCache(long initDelay, long delayCache, long cacheSize);
 
+    void configureWriteCacheBytes(long cacheBytes);
+
+    void configureTransactionBuffer(boolean enabled, long memoryLimit, long batchSize);
+
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import com.marklogic.semantics.rdf4j.utils.Util;
+import org.eclipse.rdf4j.model.Resource;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-graph triple counts of a MarkLogicRepository.
+ *
+ * In APPROXIMATE mode size queries are served from these counts, which are
+ * adjusted by writes made through this repository's connections and
+ * reconciled with a single grouped count query once older than the refresh
+ * interval. Writes made by other clients only show up after reconciliation.
+ * In EXACT mode every size query goes to the server.
+ *
+ *
+ */
+public class MarkLogicRepositoryStatistics {
+
+    public enum Mode { EXACT, APPROXIMATE }
+
+    private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
+
+    private static final long DEFAULT_REFRESH_INTERVAL = 60000;
+
+    private volatile Mode mode = Mode.EXACT;
+    private volatile long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    // guarded by this
+    private final Map<String, Long> counts = new HashMap<>();
+    private final Set<String> staleGraphs = new HashSet<>();
+    private boolean allStale = true;
+    private long reconciledAt;
+
+    /**
+     * getter for mode
+     *
+     * @return Mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * setter for mode, EXACT (default) or APPROXIMATE
+     *
+     * @param mode
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * getter for refresh interval in milliseconds
+     *
+     * @return long
+     */
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * setter for the interval in milliseconds after which counts are reconciled with the server
+     *
+     * @param refreshInterval
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Returns true if counts need reconciling before being served, either
+     * because they are older than maxAge milliseconds or because a write of
+     * unknown size touched one of the graphs.
+     *
+     * @param maxAge
+     * @param graphs graph uris, none meaning all graphs
+     * @return boolean
+     */
+    synchronized boolean isStale(long maxAge, String... graphs) {
+        if (allStale || System.currentTimeMillis() - reconciledAt > maxAge) {
+            return true;
+        }
+        if (graphs.length == 0) {
+            return !staleGraphs.isEmpty();
+        }
+        for (String graph : graphs) {
+            if (staleGraphs.contains(graph)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces all counts with those returned by the server.
+     *
+     * @param serverCounts triple count by graph uri
+     */
+    synchronized void reconcile(Map<String, Long> serverCounts) {
+        counts.clear();
+        counts.putAll(serverCounts);
+        staleGraphs.clear();
+        allStale = false;
+        reconciledAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the summed count of graphs, or of all graphs if none are given.
+     *
+     * @param graphs graph uris
+     * @return long
+     */
+    synchronized long size(String... graphs) {
+        long size = 0;
+        if (graphs.length == 0) {
+            for (long count : counts.values()) {
+                size += count;
+            }
+        } else {
+            for (String graph : graphs) {
+                size += counts.getOrDefault(graph, 0L);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Records a single triple added to contexts, none meaning the default graph.
+     *
+     * @param contexts
+     */
+    public synchronized void added(Resource... contexts) {
+        for (String graph : toGraphs(contexts)) {
+            counts.merge(graph, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Records a single, fully specified triple removed from contexts,
+     * none meaning all graphs. The triple may not have existed, so the
+     * graphs are marked stale rather than decremented.
+     *
+     * @param contexts
+     */
+    public synchronized void removed(Resource... contexts) {
+        if (contexts.length == 0) {
+            invalidate();
+            return;
+        }
+        invalidate(contexts);
+    }
+
+    /**
+     * Records contexts cleared, none meaning the default graph.
+     *
+     * @param contexts
+     */
+    public synchronized void cleared(Resource... contexts) {
+        for (String graph : toGraphs(contexts)) {
+            counts.remove(graph);
+            staleGraphs.remove(graph);
+        }
+    }
+
+    /**
+     * Records all triples cleared.
+     */
+    public synchronized void clearedAll() {
+        counts.clear();
+        staleGraphs.clear();
+    }
+
+    /**
+     * Marks contexts as changed by an unknown number of triples, none meaning the default graph.
+     *
+     * @param contexts
+     */
+    public synchronized void invalidate(Resource... contexts) {
+        for (String graph : toGraphs(contexts)) {
+            staleGraphs.add(graph);
+        }
+    }
+
+    /**
+     * Marks all graphs as changed by an unknown number of triples.
+     */
+    public synchronized void invalidate() {
+        allStale = true;
+    }
+
+    /**
+     * Maps contexts to graph uris, null and no contexts meaning the default graph.
+     *
+     * @param contexts
+     * @return String[]
+     */
+    static String[] toGraphs(Resource... contexts) {
+        if (contexts.length == 0) {
+            return new String[] { DEFAULT_GRAPH_URI };
+        }
+        String[] graphs = new String[contexts.length];
+        for (int i = 0; i < contexts.length; i++) {
+            graphs[i] = Util.notNull(contexts[i]) ? contexts[i].stringValue() : DEFAULT_GRAPH_URI;
+        }
+        return graphs;
+    }
+}
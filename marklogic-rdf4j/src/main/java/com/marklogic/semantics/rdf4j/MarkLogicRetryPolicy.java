@@ -0,0 +1,252 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import com.marklogic.client.ForbiddenUserException;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.MarkLogicServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retries idempotent requests of a MarkLogicRepository failing with transient
+ * errors: 502, 503 and 504 responses and lost connections.
+ *
+ * Only reads, INSERT DATA / DELETE DATA batches and graph merges from files
+ * are retried, and only outside of transactions, where a failed request
+ * leaves the transaction in a state only the caller can resolve. Delays grow
+ * exponentially from the initial delay up to the max delay, each shortened
+ * by a random fraction of up to jitter.
+ *
+ *
+ */
+public class MarkLogicRetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicRetryPolicy.class);
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_INITIAL_DELAY = 100;
+    private static final long DEFAULT_MAX_DELAY = 2000;
+    private static final double DEFAULT_MULTIPLIER = 2.0;
+    private static final double DEFAULT_JITTER = 0.5;
+
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long initialDelay = DEFAULT_INITIAL_DELAY;
+    private volatile long maxDelay = DEFAULT_MAX_DELAY;
+    private volatile double multiplier = DEFAULT_MULTIPLIER;
+    private volatile double jitter = DEFAULT_JITTER;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong giveUps = new AtomicLong();
+
+    private volatile MarkLogicMetrics metrics = MarkLogicMetrics.NOOP;
+
+    /**
+     * getter for max attempts
+     *
+     * @return int
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * setter for attempts made per request including the first, 1 disabling retries
+     *
+     * @param maxAttempts
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1, was " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * getter for initial delay in milliseconds
+     *
+     * @return long
+     */
+    public long getInitialDelay() {
+        return initialDelay;
+    }
+
+    /**
+     * setter for delay in milliseconds before the first retry
+     *
+     * @param initialDelay
+     */
+    public void setInitialDelay(long initialDelay) {
+        this.initialDelay = initialDelay;
+    }
+
+    /**
+     * getter for max delay in milliseconds
+     *
+     * @return long
+     */
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * setter for upper bound in milliseconds of delays between retries
+     *
+     * @param maxDelay
+     */
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * getter for multiplier
+     *
+     * @return double
+     */
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * setter for factor applied to the delay after each retry
+     *
+     * @param multiplier
+     */
+    public void setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    /**
+     * getter for jitter
+     *
+     * @return double
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * setter for jitter, the largest fraction (0 to 1) randomly taken off each delay
+     *
+     * @param jitter
+     */
+    public void setJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1, was " + jitter);
+        }
+        this.jitter = jitter;
+    }
+
+    /**
+     * Returns the number of retries made.
+     *
+     * @return long
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * Returns the number of requests which failed with a transient error on their last attempt.
+     *
+     * @return long
+     */
+    public long getGiveUpCount() {
+        return giveUps.get();
+    }
+
+    /**
+     * getter for metrics
+     *
+     * @return MarkLogicMetrics
+     */
+    public MarkLogicMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * setter for metrics recording retries and give-ups
+     *
+     * @param metrics
+     */
+    public void setMetrics(MarkLogicMetrics metrics) {
+        this.metrics = metrics != null ? metrics : MarkLogicMetrics.NOOP;
+    }
+
+    /**
+     * Runs an idempotent request, retrying transient failures.
+     *
+     * @param request
+     * @param <T>
+     * @return T
+     */
+    public <T> T execute(Supplier<T> request) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return request.get();
+            } catch (RuntimeException e) {
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    giveUps.incrementAndGet();
+                    metrics.gaveUp();
+                    throw e;
+                }
+                long delay = delay(attempt);
+                logger.debug("retrying request in {}ms after attempt {} failed: {}", delay, attempt, e.getMessage());
+                retries.incrementAndGet();
+                metrics.retried(attempt);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true for errors which may succeed when the request is repeated.
+     *
+     * @param e
+     * @return boolean
+     */
+    protected boolean isRetryable(RuntimeException e) {
+        if (e instanceof MarkLogicIOException) {
+            return true;
+        }
+        if (e instanceof MarkLogicServerException && !(e instanceof ForbiddenUserException)) {
+            int status = ((MarkLogicServerException) e).getServerStatusCode();
+            return status == 502 || status == 503 || status == 504;
+        }
+        return false;
+    }
+
+    private long delay(int attempt) {
+        double delay = Math.min(maxDelay, initialDelay * Math.pow(multiplier, attempt - 1));
+        return (long) (delay * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs queries and updates taking at least the threshold, with their
+ * timing breakdown, at WARN.
+ *
+ *
+ */
+public class MarkLogicSlowQueryLogger implements MarkLogicQueryListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicSlowQueryLogger.class);
+
+    private volatile long threshold;
+
+    /**
+     * Constructor
+     *
+     * @param threshold in milliseconds
+     */
+    public MarkLogicSlowQueryLogger(long threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * getter for threshold in milliseconds
+     *
+     * @return long
+     */
+    public long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * setter for threshold in milliseconds
+     *
+     * @param threshold
+     */
+    public void setThreshold(long threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void queryCompleted(MarkLogicQueryTrace trace) {
+        if (trace.getTotalNanos() >= threshold * 1000000) {
+            logger.warn("slow query: {} query: {}", trace, trace.getQuery());
+        }
+    }
+}
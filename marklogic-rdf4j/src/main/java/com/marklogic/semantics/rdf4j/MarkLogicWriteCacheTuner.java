@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+/**
+ * Tunes batch size and flush interval of write and delete caches from the
+ * latency, outcome and payload size of their flushes, instead of the fixed
+ * values of configureWriteCache.
+ *
+ * Batch size follows additive increase, multiplicative decrease: a full
+ * batch flushed within the target latency grows it by the increment, a
+ * flush slower than the target or failing halves it. Batches are also
+ * capped so their payload stays under the max payload size. The flush
+ * interval backs off, doubling, on slow or failed flushes and otherwise
+ * shrinks by a quarter, no lower than twice the observed latency. Both
+ * stay within their min and max bounds.
+ *
+ * Stateless, so one tuner can be shared by all connections of a
+ * repository; each cache tunes its own values, reported to
+ * MarkLogicMetrics.writeCacheTuned.
+ *
+ *
+ */
+public class MarkLogicWriteCacheTuner {
+
+    private static final long DEFAULT_MIN_CACHE_SIZE = 100;
+    private static final long DEFAULT_MAX_CACHE_SIZE = 50000;
+    private static final long DEFAULT_INCREMENT = 250;
+    private static final long DEFAULT_MIN_CACHE_MILLIS = 100;
+    private static final long DEFAULT_MAX_CACHE_MILLIS = 10000;
+    private static final long DEFAULT_TARGET_LATENCY = 500;
+    private static final long DEFAULT_MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    private volatile long minCacheSize = DEFAULT_MIN_CACHE_SIZE;
+    private volatile long maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+    private volatile long increment = DEFAULT_INCREMENT;
+    private volatile long minCacheMillis = DEFAULT_MIN_CACHE_MILLIS;
+    private volatile long maxCacheMillis = DEFAULT_MAX_CACHE_MILLIS;
+    private volatile long targetLatency = DEFAULT_TARGET_LATENCY;
+    private volatile long maxPayloadSize = DEFAULT_MAX_PAYLOAD_SIZE;
+
+    /**
+     * getter for min cache size
+     *
+     * @return long
+     */
+    public long getMinCacheSize() {
+        return minCacheSize;
+    }
+
+    /**
+     * setter for smallest batch size in statements
+     *
+     * @param minCacheSize
+     */
+    public void setMinCacheSize(long minCacheSize) {
+        if (minCacheSize < 1) {
+            throw new IllegalArgumentException("minCacheSize must be at least 1, was " + minCacheSize);
+        }
+        this.minCacheSize = minCacheSize;
+    }
+
+    /**
+     * getter for max cache size
+     *
+     * @return long
+     */
+    public long getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * setter for largest batch size in statements
+     *
+     * @param maxCacheSize
+     */
+    public void setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * getter for increment
+     *
+     * @return long
+     */
+    public long getIncrement() {
+        return increment;
+    }
+
+    /**
+     * setter for statements added to the batch size after a full batch flushed within the target latency
+     *
+     * @param increment
+     */
+    public void setIncrement(long increment) {
+        this.increment = increment;
+    }
+
+    /**
+     * getter for min cache interval in milliseconds
+     *
+     * @return long
+     */
+    public long getMinCacheMillis() {
+        return minCacheMillis;
+    }
+
+    /**
+     * setter for shortest flush interval in milliseconds
+     *
+     * @param minCacheMillis
+     */
+    public void setMinCacheMillis(long minCacheMillis) {
+        if (minCacheMillis < 1) {
+            throw new IllegalArgumentException("minCacheMillis must be at least 1, was " + minCacheMillis);
+        }
+        this.minCacheMillis = minCacheMillis;
+    }
+
+    /**
+     * getter for max cache interval in milliseconds
+     *
+     * @return long
+     */
+    public long getMaxCacheMillis() {
+        return maxCacheMillis;
+    }
+
+    /**
+     * setter for longest flush interval in milliseconds
+     *
+     * @param maxCacheMillis
+     */
+    public void setMaxCacheMillis(long maxCacheMillis) {
+        this.maxCacheMillis = maxCacheMillis;
+    }
+
+    /**
+     * getter for target latency in milliseconds
+     *
+     * @return long
+     */
+    public long getTargetLatency() {
+        return targetLatency;
+    }
+
+    /**
+     * setter for flush latency in milliseconds above which batches shrink
+     *
+     * @param targetLatency
+     */
+    public void setTargetLatency(long targetLatency) {
+        this.targetLatency = targetLatency;
+    }
+
+    /**
+     * getter for max payload size in bytes
+     *
+     * @return long
+     */
+    public long getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    /**
+     * setter for payload size in bytes batches are kept under
+     *
+     * @param maxPayloadSize
+     */
+    public void setMaxPayloadSize(long maxPayloadSize) {
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    /**
+     * Returns the batch size to use after a flush.
+     *
+     * @param cacheSize batch size in effect
+     * @param statements statements flushed
+     * @param nanos flush latency
+     * @param bytes payload size
+     * @param failed
+     * @return long
+     */
+    public long nextCacheSize(long cacheSize, long statements, long nanos, long bytes, boolean failed) {
+        long next = cacheSize;
+        if (failed || nanos > targetLatency * 1000000) {
+            next = cacheSize / 2;
+        } else if (statements >= cacheSize) {
+            // only full batches show the size was limiting
+            next = cacheSize + increment;
+        }
+        if (bytes > 0 && statements > 0) {
+            next = Math.min(next, maxPayloadSize / Math.max(1, bytes / statements));
+        }
+        return clampCacheSize(next);
+    }
+
+    /**
+     * Returns the flush interval to use after a flush.
+     *
+     * @param cacheMillis interval in effect
+     * @param nanos flush latency
+     * @param failed
+     * @return long
+     */
+    public long nextCacheMillis(long cacheMillis, long nanos, boolean failed) {
+        long latency = nanos / 1000000;
+        if (failed || latency > targetLatency) {
+            return clampCacheMillis(cacheMillis * 2);
+        }
+        return clampCacheMillis(Math.max(cacheMillis - cacheMillis / 4, latency * 2));
+    }
+
+    /**
+     * Bounds a batch size by min and max cache size.
+     *
+     * @param cacheSize
+     * @return long
+     */
+    public long clampCacheSize(long cacheSize) {
+        return Math.max(minCacheSize, Math.min(maxCacheSize, cacheSize));
+    }
+
+    /**
+     * Bounds a flush interval by min and max cache millis.
+     *
+     * @param cacheMillis
+     * @return long
+     */
+    public long clampCacheMillis(long cacheMillis) {
+        return Math.max(minCacheMillis, Math.min(maxCacheMillis, cacheMillis));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file through read-only memory mappings of up to REGION_SIZE bytes
+ * each, so uploads stream from the page cache without copying the file
+ * through heap buffers.
+ *
+ *
+ */
+class MappedFileInputStream extends InputStream {
+
+    private static final long REGION_SIZE = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private long position;
+
+    private MappedByteBuffer region;
+
+    MappedFileInputStream(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextRegion()) {
+            return -1;
+        }
+        return region.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextRegion()) {
+            return -1;
+        }
+        int n = Math.min(len, region.remaining());
+        region.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return region != null ? region.remaining() : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        region = null;
+        channel.close();
+    }
+
+    // maps the next region once the current one is consumed, false at end of file
+    private boolean nextRegion() throws IOException {
+        if (region != null && region.hasRemaining()) {
+            return true;
+        }
+        if (position >= size) {
+            return false;
+        }
+        long length = Math.min(REGION_SIZE, size - position);
+        region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        position += length;
+        return true;
+    }
+}
@@ -15,16 +15,25 @@
  */
 package com.marklogic.semantics.rdf4j.client;
 
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics;
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.MarkLogicQueryTrace;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryInterruptedException;
 import org.eclipse.rdf4j.query.impl.BackgroundGraphResult;
 import org.eclipse.rdf4j.query.impl.QueueCursor;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.eclipse.rdf4j.rio.RDFParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * Wrapper on RDF4J BackgroundGraphResult
@@ -36,6 +45,25 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
 {
     private static final Logger logger = LoggerFactory.getLogger(MarkLogicBackgroundGraphResult.class);
 
+    // as BackgroundGraphResult
+    private static final int QUEUE_CAPACITY = 10;
+
+    private final InputStream in;
+
+    private volatile boolean interrupted;
+
+    private volatile ScheduledFuture<?> timeout;
+
+    private final MarkLogicMetrics metrics;
+
+    private final BlockingQueue<Statement> buffer;
+
+    private final MeteredInputStream counter;
+
+    private final MarkLogicQueryTrace trace;
+
+    private long results;
+
     /**
      *  constructor
      *
@@ -46,6 +74,11 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
      */
     public MarkLogicBackgroundGraphResult(RDFParser parser, InputStream in, Charset charset, String baseURI) {
         super(parser, in, charset, baseURI);
+        this.in = in;
+        this.metrics = MarkLogicMetrics.NOOP;
+        this.buffer = null;
+        this.counter = null;
+        this.trace = null;
     }
 
     /**
@@ -59,6 +92,63 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
      */
     public MarkLogicBackgroundGraphResult(QueueCursor<Statement> queue, RDFParser parser, InputStream in, Charset charset, String baseURI) {
         super(queue, parser, in, charset, baseURI);
+        this.in = in;
+        this.metrics = MarkLogicMetrics.NOOP;
+        this.buffer = null;
+        this.counter = null;
+        this.trace = null;
+    }
+
+    /**
+     * constructor reporting parse time, statements, bytes received and queue depth to metrics and trace
+     *
+     * @param parser
+     * @param in
+     * @param charset
+     * @param baseURI
+     * @param metrics
+     * @param trace
+     */
+    MarkLogicBackgroundGraphResult(RDFParser parser, MeteredInputStream in, Charset charset, String baseURI, MarkLogicMetrics metrics, MarkLogicQueryTrace trace) {
+        this(new ArrayBlockingQueue<>(QUEUE_CAPACITY), parser, in, charset, baseURI, metrics, trace);
+    }
+
+    private MarkLogicBackgroundGraphResult(BlockingQueue<Statement> buffer, RDFParser parser, MeteredInputStream in, Charset charset, String baseURI, MarkLogicMetrics metrics, MarkLogicQueryTrace trace) {
+        super(new QueueCursor<>(buffer), parser, in, charset, baseURI);
+        this.in = in;
+        this.metrics = metrics;
+        this.buffer = buffer;
+        this.counter = in;
+        this.trace = trace;
+    }
+
+    /**
+     * Parses the response, then reports it to metrics and trace.
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        try {
+            super.run();
+        } finally {
+            long nanos = System.nanoTime() - start;
+            if (counter != null) {
+                metrics.resultParsed(Operation.CONSTRUCT, results, counter.getByteCount(), nanos);
+                trace.received(results, counter.getByteCount(), counter.getReadNanos(), nanos);
+            }
+        }
+    }
+
+    /**
+     * Queues a statement, counting it and sampling queue depth.
+     */
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+        super.handleStatement(st);
+        results++;
+        if (buffer != null) {
+            metrics.resultQueueDepth(Operation.CONSTRUCT, buffer.size());
+        }
     }
 
     /**
@@ -70,15 +160,27 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
     public boolean hasNext()
         throws QueryEvaluationException
     {
+        checkInterrupted();
         try {
             return super.hasNext();
 
         }catch(QueryEvaluationException e){
+            checkInterrupted();
             logger.info("MarkLogicBackgroundGraphResult hasNext() stream closed");
             return false;
         }
     }
 
+    /**
+     * Throws QueryInterruptedException once max execution time has passed.
+     *
+     */
+    @Override
+    public Statement next() throws QueryEvaluationException {
+        checkInterrupted();
+        return super.next();
+    }
+
     /**
      * Wrap exception.
      * Check debug log.
@@ -86,6 +188,9 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
      */
     @Override
     protected void handleClose() throws QueryEvaluationException {
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
         try {
             super.handleClose();
         }catch(Exception e){
@@ -94,4 +199,40 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
         }
     }
 
+    /**
+     * Sets the scheduled max execution time check, cancelled on close.
+     *
+     * @param timeout
+     */
+    void setTimeout(ScheduledFuture<?> timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Aborts the response stream and closes the result after max execution
+     * time has passed; further iteration throws QueryInterruptedException.
+     */
+    void interrupt() {
+        if (isClosed()) {
+            return;
+        }
+        interrupted = true;
+        try {
+            in.close();
+        } catch (IOException e) {
+            logger.debug("MarkLogicBackgroundGraphResult interrupt() stream close exception", e);
+        }
+        try {
+            close();
+        } catch (QueryEvaluationException e) {
+            logger.debug("MarkLogicBackgroundGraphResult interrupt() close exception", e);
+        }
+    }
+
+    private void checkInterrupted() throws QueryInterruptedException {
+        if (interrupted) {
+            throw new QueryInterruptedException("Query exceeded max execution time");
+        }
+    }
+
 }
@@ -15,15 +15,24 @@
  */
 package com.marklogic.semantics.rdf4j.client;
 
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics;
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.MarkLogicQueryTrace;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryInterruptedException;
+import org.eclipse.rdf4j.query.TupleQueryResultHandlerException;
 import org.eclipse.rdf4j.query.impl.QueueCursor;
 import org.eclipse.rdf4j.query.resultio.TupleQueryResultParser;
 import org.eclipse.rdf4j.query.resultio.helpers.BackgroundTupleResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * Wrapper on RDF4J BackgroundTupleResult
@@ -34,6 +43,25 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
 
     private static final Logger logger = LoggerFactory.getLogger(MarkLogicBackgroundGraphResult.class);
 
+    // as BackgroundTupleResult
+    private static final int QUEUE_CAPACITY = 10;
+
+    private final InputStream in;
+
+    private volatile boolean interrupted;
+
+    private volatile ScheduledFuture<?> timeout;
+
+    private final MarkLogicMetrics metrics;
+
+    private final BlockingQueue<BindingSet> buffer;
+
+    private final MeteredInputStream counter;
+
+    private final MarkLogicQueryTrace trace;
+
+    private long results;
+
     /**
      *  constructor
      *
@@ -42,6 +70,11 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
      */
     public MarkLogicBackgroundTupleResult(TupleQueryResultParser parser, InputStream in) {
         super(parser, in);
+        this.in = in;
+        this.metrics = MarkLogicMetrics.NOOP;
+        this.buffer = null;
+        this.counter = null;
+        this.trace = null;
     }
 
     /**
@@ -53,6 +86,61 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
      */
     public MarkLogicBackgroundTupleResult(QueueCursor<BindingSet> queue, TupleQueryResultParser parser, InputStream in) {
         super(queue, parser, in);
+        this.in = in;
+        this.metrics = MarkLogicMetrics.NOOP;
+        this.buffer = null;
+        this.counter = null;
+        this.trace = null;
+    }
+
+    /**
+     * constructor reporting parse time, results, bytes received and queue depth to metrics and trace
+     *
+     * @param parser
+     * @param in
+     * @param metrics
+     * @param trace
+     */
+    MarkLogicBackgroundTupleResult(TupleQueryResultParser parser, MeteredInputStream in, MarkLogicMetrics metrics, MarkLogicQueryTrace trace) {
+        this(new ArrayBlockingQueue<>(QUEUE_CAPACITY), parser, in, metrics, trace);
+    }
+
+    private MarkLogicBackgroundTupleResult(BlockingQueue<BindingSet> buffer, TupleQueryResultParser parser, MeteredInputStream in, MarkLogicMetrics metrics, MarkLogicQueryTrace trace) {
+        super(new QueueCursor<>(buffer), parser, in);
+        this.in = in;
+        this.metrics = metrics;
+        this.buffer = buffer;
+        this.counter = in;
+        this.trace = trace;
+    }
+
+    /**
+     * Parses the response, then reports it to metrics and trace.
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        try {
+            super.run();
+        } finally {
+            long nanos = System.nanoTime() - start;
+            if (counter != null) {
+                metrics.resultParsed(Operation.SELECT, results, counter.getByteCount(), nanos);
+                trace.received(results, counter.getByteCount(), counter.getReadNanos(), nanos);
+            }
+        }
+    }
+
+    /**
+     * Queues a solution, counting it and sampling queue depth.
+     */
+    @Override
+    public void handleSolution(BindingSet bindingSet) throws TupleQueryResultHandlerException {
+        super.handleSolution(bindingSet);
+        results++;
+        if (buffer != null) {
+            metrics.resultQueueDepth(Operation.SELECT, buffer.size());
+        }
     }
 
     /**
@@ -63,20 +151,34 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
     public boolean hasNext()
             throws QueryEvaluationException
     {
+        checkInterrupted();
         try {
             return super.hasNext();
         }catch(Exception e){
+            checkInterrupted();
             logger.info("MarkLogicBackgroundTupleResult hasNext() stream closed");
             return false;
         }
     }
 
+    /**
+     * Throws QueryInterruptedException once max execution time has passed.
+     */
+    @Override
+    public BindingSet next() throws QueryEvaluationException {
+        checkInterrupted();
+        return super.next();
+    }
+
     /**
      * Wrap exception.
      * Check debug log.
      */
     @Override
     protected void handleClose() throws QueryEvaluationException {
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
         try {
             super.handleClose();
         }catch(Exception e){
@@ -84,4 +186,40 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
             throw new QueryEvaluationException(e);
         }
     }
+
+    /**
+     * Sets the scheduled max execution time check, cancelled on close.
+     *
+     * @param timeout
+     */
+    void setTimeout(ScheduledFuture<?> timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Aborts the response stream and closes the result after max execution
+     * time has passed; further iteration throws QueryInterruptedException.
+     */
+    void interrupt() {
+        if (isClosed()) {
+            return;
+        }
+        interrupted = true;
+        try {
+            in.close();
+        } catch (IOException e) {
+            logger.debug("MarkLogicBackgroundTupleResult interrupt() stream close exception", e);
+        }
+        try {
+            close();
+        } catch (QueryEvaluationException e) {
+            logger.debug("MarkLogicBackgroundTupleResult interrupt() close exception", e);
+        }
+    }
+
+    private void checkInterrupted() throws QueryInterruptedException {
+        if (interrupted) {
+            throw new QueryInterruptedException("Query exceeded max execution time");
+        }
+    }
 }
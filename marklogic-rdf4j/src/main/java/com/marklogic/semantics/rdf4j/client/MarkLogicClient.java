@@ -19,16 +19,27 @@
  */
 package com.marklogic.semantics.rdf4j.client;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.ForbiddenUserException;
 import com.marklogic.client.Transaction;
+import com.marklogic.client.io.InputStreamHandle;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphPermissions;
+import com.marklogic.client.semantics.SPARQLQueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import com.marklogic.semantics.rdf4j.MarkLogicGraphCache;
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics;
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.MarkLogicQueryListener;
+import com.marklogic.semantics.rdf4j.MarkLogicQueryTrace;
+import com.marklogic.semantics.rdf4j.MarkLogicReadConsistency;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryStatistics;
+import com.marklogic.semantics.rdf4j.MarkLogicRetryPolicy;
 import com.marklogic.semantics.rdf4j.MarkLogicTransactionException;
+import com.marklogic.semantics.rdf4j.MarkLogicWriteCacheTuner;
 import com.marklogic.semantics.rdf4j.utils.Util;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.io.input.ReaderInputStream;
 import org.eclipse.rdf4j.http.protocol.UnauthorizedException;
 import org.eclipse.rdf4j.model.*;
@@ -43,15 +54,28 @@ import org.eclipse.rdf4j.rio.helpers.ParseErrorLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.Timer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 /**
  * An internal class that straddles Rdf4j and MarkLogic Java client API.
@@ -69,20 +93,58 @@ public class MarkLogicClient {
 	protected static final RDFFormat rdfFormat = RDFFormat.NTRIPLES;
 	private MarkLogicClientImpl _client;
 
-	private final Executor executor = Executors.newCachedThreadPool();
+	// runs requests with a max execution time, and async requests when no executor is set
+	private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "marklogic-request");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private Executor asyncExecutor;
+
+	private MarkLogicRepositoryStatistics statistics;
+	private MarkLogicGraphCache graphCache;
+	private MarkLogicRetryPolicy retryPolicy;
+	private MarkLogicMetrics metrics = MarkLogicMetrics.NOOP;
+	private volatile MarkLogicReadConsistency readConsistency = MarkLogicReadConsistency.STRONG;
+	private List<MarkLogicQueryListener> queryListeners = Collections.emptyList();
+
+	// shared by all clients, only schedules max execution time checks
+	private static final ScheduledThreadPoolExecutor queryTimer = newQueryTimer();
 
 	private ValueFactory f;
 
 	private ParserConfig parserConfig = new ParserConfig();
 
-	private Transaction tx = null;
+	// transaction and query settings of the connection using this client
+	private final MarkLogicRequestContext context = new MarkLogicRequestContext();
 
 	private SPARQLRuleset[] defaultRulesets;
 
 	private TripleWriteCache timerWriteCache;
-	private Timer writeTimer;
 	private TripleDeleteCache timerDeleteCache;
-	private Timer deleteTimer;
+
+	// null unless adds through the write cache are journaled
+	private File journalDirectory;
+
+	// null unless cache size and interval are tuned
+	private MarkLogicWriteCacheTuner writeCacheTuner;
+
+	private long writeCacheBytes = TripleCache.DEFAULT_CACHE_BYTES;
+
+	private volatile int flushParallelism = 1;
+
+	private static final int GZIP_MAGIC_1 = 0x1f;
+	private static final int GZIP_MAGIC_2 = 0x8b;
+	private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+	private boolean txBuffering = false;
+	private long txBufferMemoryLimit = TripleTransactionBuffer.DEFAULT_MEMORY_LIMIT;
+	private long txBufferBatchSize = TripleTransactionBuffer.DEFAULT_BATCH_SIZE;
+	private TripleTransactionBuffer txBuffer;
+
+	// set when an update timed out inside the open transaction, which may still apply it
+	private volatile boolean rollbackOnly;
 
 	private static boolean WRITE_CACHE_ENABLED = true;
 	private static boolean DELETE_CACHE_ENABLED = false;
@@ -108,56 +170,72 @@ public class MarkLogicClient {
 	}
 
 	/**
-	 * start Timer task (write cache)
+	 * Constructor sharing another client's MarkLogicClientImpl, with its own
+	 * transaction, settings and write caches.
+	 *
+	 */
+	public MarkLogicClient(MarkLogicClientImpl client) {
+		this._client = client;
+		this.initTimer();
+	}
+
+	/**
+	 * start write cache, flushed on the pool shared by all caches
 	 */
 	public void initTimer(){
 		stopTimer();
 		if(WRITE_CACHE_ENABLED) {
 			logger.debug("configuring write cache with defaults");
 			timerWriteCache = new TripleWriteCache(this);
-			writeTimer = new Timer();
-			writeTimer.scheduleAtFixedRate(timerWriteCache, TripleWriteCache.DEFAULT_INITIAL_DELAY, TripleWriteCache.DEFAULT_CACHE_MILLIS);
+			attachJournal();
+			timerWriteCache.setCacheBytes(writeCacheBytes);
+			timerWriteCache.setTuner(writeCacheTuner);
 		}
 		if(DELETE_CACHE_ENABLED) {
 			logger.debug("configuring delete cache with defaults");
 			timerDeleteCache = new TripleDeleteCache(this);
-			deleteTimer = new Timer();
-			deleteTimer.scheduleAtFixedRate(timerDeleteCache, TripleDeleteCache.DEFAULT_INITIAL_DELAY, TripleDeleteCache.DEFAULT_CACHE_MILLIS);
+			timerDeleteCache.setCacheBytes(writeCacheBytes);
+			timerDeleteCache.setTuner(writeCacheTuner);
 		}
 	}
 
+	/**
+	 * start write cache with custom settings
+	 *
+	 * @param initDelay unused, caches only wake up while holding triples
+	 * @param delayCache max time (ms) triples wait in the cache
+	 * @param cacheSize max triples in the cache
+	 */
 	public void initTimer(long initDelay, long delayCache, long cacheSize ){
 		stopTimer();
 		if(WRITE_CACHE_ENABLED) {
 			logger.debug("configuring write cache");
 			timerWriteCache = new TripleWriteCache(this,cacheSize);
-			writeTimer = new Timer();
-			writeTimer.scheduleAtFixedRate(timerWriteCache, initDelay, delayCache);
+			timerWriteCache.setCacheMillis(delayCache);
+			attachJournal();
+			timerWriteCache.setCacheBytes(writeCacheBytes);
+			timerWriteCache.setTuner(writeCacheTuner);
 		}
 		if(DELETE_CACHE_ENABLED) {
 			logger.debug("configuring delete cache");
 			timerDeleteCache = new TripleDeleteCache(this);
-			deleteTimer = new Timer();
-			deleteTimer.scheduleAtFixedRate(timerDeleteCache, initDelay, delayCache);
+			timerDeleteCache.setCacheMillis(delayCache);
+			timerDeleteCache.setCacheBytes(writeCacheBytes);
+			timerDeleteCache.setTuner(writeCacheTuner);
 		}
 	}
 	/**
-	 * stop Timer task (write cache)
+	 * stop flushing write cache on its deadline
 	 */
 	public void stopTimer() {
 		if(WRITE_CACHE_ENABLED) {
 			if(timerWriteCache != null) {
 				timerWriteCache.cancel();
-			}
-			if(writeTimer != null){
-				writeTimer.cancel();
+				closeJournal();
 			}
 			if(timerDeleteCache != null) {
 				timerDeleteCache.cancel();
 			}
-			if(deleteTimer != null){
-				deleteTimer.cancel();
-			}
 		}
 	}
 
@@ -167,12 +245,175 @@ public class MarkLogicClient {
 	 * @throws MarkLogicRdf4jException
 	 */
 	public void sync() throws MarkLogicRdf4jException {
+		flushTransactionBuffer();
 		if(WRITE_CACHE_ENABLED && timerWriteCache != null)
 			timerWriteCache.forceRun();
 		if(DELETE_CACHE_ENABLED && timerDeleteCache != null)
 			timerDeleteCache.forceRun();
 	}
 
+	/**
+	 * Flushes the write and delete caches before a query as the read
+	 * consistency requires. Transaction buffers are always shipped, so
+	 * transactions read their own writes.
+	 *
+	 * @param graphs supplies the graph uris the query may read, null for any graph
+	 * @throws MarkLogicRdf4jException
+	 */
+	public void syncForRead(Supplier<Set<String>> graphs) throws MarkLogicRdf4jException {
+		flushTransactionBuffer();
+		MarkLogicReadConsistency consistency = readConsistency;
+		TripleCache writeCache = WRITE_CACHE_ENABLED ? timerWriteCache : null;
+		TripleCache deleteCache = DELETE_CACHE_ENABLED ? timerDeleteCache : null;
+		boolean flushed = false;
+		if (consistency == MarkLogicReadConsistency.STRONG) {
+			flushed = flushIfPending(writeCache, null) | flushIfPending(deleteCache, null);
+		} else if (consistency == MarkLogicReadConsistency.GRAPH_AWARE
+				&& ((writeCache != null && !writeCache.isEmpty()) || (deleteCache != null && !deleteCache.isEmpty()))) {
+			Set<String> read = graphs.get();
+			flushed = flushIfPending(writeCache, read) | flushIfPending(deleteCache, read);
+		}
+		metrics.readSynced(consistency, flushed);
+	}
+
+	private static boolean flushIfPending(TripleCache cache, Set<String> graphs) throws MarkLogicRdf4jException {
+		if (cache == null || cache.isEmpty() || (graphs != null && !cache.touches(graphs))) {
+			return false;
+		}
+		cache.forceRun();
+		return true;
+	}
+
+	/**
+	 * setter for read consistency
+	 *
+	 * @param readConsistency
+	 */
+	public void setReadConsistency(MarkLogicReadConsistency readConsistency) {
+		this.readConsistency = readConsistency != null ? readConsistency : MarkLogicReadConsistency.STRONG;
+	}
+
+	/**
+	 * getter for read consistency
+	 *
+	 * @return MarkLogicReadConsistency
+	 */
+	public MarkLogicReadConsistency getReadConsistency() {
+		return readConsistency;
+	}
+
+	/**
+	 * Journals adds made through the write cache to a file in directory
+	 * until they are flushed, so they can be replayed by TripleJournal.replay
+	 * if the JVM dies first.
+	 *
+	 * @param directory null to stop journaling
+	 */
+	public synchronized void setWriteJournal(File directory) throws MarkLogicRdf4jException {
+		closeJournal();
+		this.journalDirectory = directory;
+		attachJournal();
+	}
+
+	/**
+	 * getter for write journal directory
+	 *
+	 * @return File
+	 */
+	public File getWriteJournal() {
+		return journalDirectory;
+	}
+
+	/**
+	 * Tunes cache size and interval of write and delete caches from their
+	 * flushes; later calls to initTimer keep the tuner.
+	 *
+	 * @param tuner null to stop tuning, keeping the current values
+	 */
+	public synchronized void setWriteCacheTuner(MarkLogicWriteCacheTuner tuner) {
+		this.writeCacheTuner = tuner;
+		if (timerWriteCache != null) {
+			timerWriteCache.setTuner(tuner);
+		}
+		if (timerDeleteCache != null) {
+			timerDeleteCache.setTuner(tuner);
+		}
+	}
+
+	/**
+	 * Sets the estimated update size in bytes at which write and delete
+	 * caches flush, whichever of it, cache size or interval is reached first.
+	 *
+	 * @param cacheBytes
+	 */
+	public synchronized void setWriteCacheBytes(long cacheBytes) {
+		this.writeCacheBytes = cacheBytes;
+		if (timerWriteCache != null) {
+			timerWriteCache.setCacheBytes(cacheBytes);
+		}
+		if (timerDeleteCache != null) {
+			timerDeleteCache.setCacheBytes(cacheBytes);
+		}
+	}
+
+	/**
+	 * getter for write cache bytes
+	 *
+	 * @return long
+	 */
+	public long getWriteCacheBytes() {
+		return writeCacheBytes;
+	}
+
+	/**
+	 * Sets the number of concurrent requests large write and delete cache
+	 * flushes are split into outside of transactions, sent on the async
+	 * executor. Flushes inside transactions stay a single request. The pool
+	 * flushing caches of all clients grows to run at least flushParallelism
+	 * flushes at once.
+	 *
+	 * @param flushParallelism 1 (default) for single request flushes
+	 */
+	public void setFlushParallelism(int flushParallelism) {
+		if (flushParallelism < 1) {
+			throw new IllegalArgumentException("flushParallelism must be at least 1, was " + flushParallelism);
+		}
+		this.flushParallelism = flushParallelism;
+		TripleCache.ensureFlushThreads(flushParallelism);
+	}
+
+	/**
+	 * getter for flush parallelism
+	 *
+	 * @return int
+	 */
+	public int getFlushParallelism() {
+		return flushParallelism;
+	}
+
+	/**
+	 * getter for write cache tuner
+	 *
+	 * @return MarkLogicWriteCacheTuner
+	 */
+	public MarkLogicWriteCacheTuner getWriteCacheTuner() {
+		return writeCacheTuner;
+	}
+
+	private void attachJournal() throws MarkLogicRdf4jException {
+		if (journalDirectory != null && timerWriteCache != null) {
+			timerWriteCache.setJournal(new TripleJournal(journalDirectory));
+		}
+	}
+
+	// leaves unflushed statements on disk for replay
+	private void closeJournal() {
+		if (timerWriteCache != null && timerWriteCache.getJournal() != null) {
+			timerWriteCache.getJournal().close();
+			timerWriteCache.setJournal(null);
+		}
+	}
+
 	/**
 	 * get value factory
 	 *
@@ -191,6 +432,41 @@ public class MarkLogicClient {
 		this.f=f;
 	}
 
+	/**
+	 * Builds a query template for SELECT, CONSTRUCT, DESCRIBE and ASK queries.
+	 *
+	 * @param queryString
+	 * @param baseURI
+	 * @param includeInferred
+	 * @return SPARQLQueryDefinition
+	 */
+	public SPARQLQueryDefinition newQueryDefinition(String queryString, String baseURI, boolean includeInferred) {
+		return getClient().newQueryDefinition(context, queryString, baseURI, includeInferred);
+	}
+
+	/**
+	 * Builds a query template for SPARQL updates.
+	 *
+	 * @param queryString
+	 * @param baseURI
+	 * @param includeInferred
+	 * @return SPARQLQueryDefinition
+	 */
+	public SPARQLQueryDefinition newUpdateDefinition(String queryString, String baseURI, boolean includeInferred) {
+		return getClient().newUpdateDefinition(context, queryString, baseURI, includeInferred);
+	}
+
+	/**
+	 * Copies a query template to a new definition of queryString, for a single evaluation.
+	 *
+	 * @param template
+	 * @param queryString
+	 * @return SPARQLQueryDefinition
+	 */
+	public SPARQLQueryDefinition copyQueryDefinition(SPARQLQueryDefinition template, String queryString) {
+		return getClient().copyQueryDefinition(template, queryString);
+	}
+
 	/**
 	 * TupleQuery
 	 *
@@ -208,15 +484,67 @@ public class MarkLogicClient {
 	 */
 	public TupleQueryResult sendTupleQuery(String queryString,SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI) throws RepositoryException, MalformedQueryException,
 			QueryInterruptedException {
-		InputStream stream = null;
-		try {
-			stream = getClient().performSPARQLQuery(queryString, bindings, start, pageLength, this.tx, includeInferred, baseURI);
-		} catch (JsonProcessingException e) {
-			logger.error(e.getLocalizedMessage());
-			throw new MarkLogicRdf4jException("Issue processing json.");
-		}
+		return sendTupleQuery(newQueryDefinition(queryString, baseURI, includeInferred), start, pageLength);
+	}
+
+	/**
+	 * TupleQuery from a prepared query template.
+	 *
+	 * @param qdef
+	 * @param start
+	 * @param pageLength
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public TupleQueryResult sendTupleQuery(SPARQLQueryDefinition qdef, long start, long pageLength) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		return sendTupleQuery(qdef, start, pageLength, 0);
+	}
+
+	/**
+	 * TupleQuery from a prepared query template, interrupted once maxExecutionTime
+	 * seconds have passed (0 or less means no limit).
+	 *
+	 * @param qdef
+	 * @param start
+	 * @param pageLength
+	 * @param maxExecutionTime
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public TupleQueryResult sendTupleQuery(SPARQLQueryDefinition qdef, long start, long pageLength, int maxExecutionTime) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		return sendTupleQuery(qdef, start, pageLength, maxExecutionTime, newTrace(Operation.SELECT));
+	}
+
+	/**
+	 * TupleQuery from a prepared query template, traced from trace's start.
+	 *
+	 * @param qdef
+	 * @param start
+	 * @param pageLength
+	 * @param maxExecutionTime
+	 * @param trace
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public TupleQueryResult sendTupleQuery(SPARQLQueryDefinition qdef, long start, long pageLength, int maxExecutionTime, MarkLogicQueryTrace trace) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		long deadline = deadline(maxExecutionTime);
+		trace.prepared(qdef.getSparql());
+		bytesSent(Operation.SELECT, qdef);
+		MeteredInputStream stream = new MeteredInputStream(traced(trace, () -> timed(Operation.SELECT, () -> withTimeout(() -> retry(() -> getClient().performSPARQLQuery(qdef, new InputStreamHandle(), start, pageLength, context)), maxExecutionTime))));
 		TupleQueryResultParser parser = QueryResultIO.createTupleParser(format, getValueFactory());
-		MarkLogicBackgroundTupleResult tRes = new MarkLogicBackgroundTupleResult(parser,stream);
+		MarkLogicBackgroundTupleResult tRes = new MarkLogicBackgroundTupleResult(parser,stream,metrics,trace);
+		if (deadline > 0) {
+			tRes.setTimeout(queryTimer.schedule(() -> execute(tRes::interrupt), remaining(deadline), TimeUnit.MILLISECONDS));
+		}
 		execute(tRes);
 		return tRes;
 	}
@@ -232,7 +560,47 @@ public class MarkLogicClient {
 	 * @throws IOException
 	 */
 	public GraphQueryResult sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, MarkLogicRdf4jException {
-		InputStream stream = getClient().performGraphQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+		return sendGraphQuery(newQueryDefinition(queryString, baseURI, includeInferred));
+	}
+
+	/**
+	 * GraphQuery from a prepared query template.
+	 *
+	 * @param qdef
+	 * @return
+	 * @throws IOException
+	 */
+	public GraphQueryResult sendGraphQuery(SPARQLQueryDefinition qdef) throws IOException, MarkLogicRdf4jException {
+		return sendGraphQuery(qdef, 0);
+	}
+
+	/**
+	 * GraphQuery from a prepared query template, interrupted once maxExecutionTime
+	 * seconds have passed (0 or less means no limit).
+	 *
+	 * @param qdef
+	 * @param maxExecutionTime
+	 * @return
+	 * @throws IOException
+	 */
+	public GraphQueryResult sendGraphQuery(SPARQLQueryDefinition qdef, int maxExecutionTime) throws IOException, MarkLogicRdf4jException {
+		return sendGraphQuery(qdef, maxExecutionTime, newTrace(Operation.CONSTRUCT));
+	}
+
+	/**
+	 * GraphQuery from a prepared query template, traced from trace's start.
+	 *
+	 * @param qdef
+	 * @param maxExecutionTime
+	 * @param trace
+	 * @return
+	 * @throws IOException
+	 */
+	public GraphQueryResult sendGraphQuery(SPARQLQueryDefinition qdef, int maxExecutionTime, MarkLogicQueryTrace trace) throws IOException, MarkLogicRdf4jException {
+		long deadline = deadline(maxExecutionTime);
+		trace.prepared(qdef.getSparql());
+		bytesSent(Operation.CONSTRUCT, qdef);
+		MeteredInputStream stream = new MeteredInputStream(traced(trace, () -> timed(Operation.CONSTRUCT, () -> withTimeout(() -> retry(() -> getClient().performGraphQuery(qdef, new InputStreamHandle(), context)), maxExecutionTime))));
 
 		RDFParser parser = Rio.createParser(rdfFormat, getValueFactory());
 		parser.setParserConfig(getParserConfig());
@@ -242,12 +610,16 @@ public class MarkLogicClient {
 		MarkLogicBackgroundGraphResult gRes;
 
 		// fixup - baseURI cannot be null
-		if(baseURI != null){
-			gRes= new MarkLogicBackgroundGraphResult(parser,stream,charset,baseURI);
+		if(qdef.getBaseUri() != null){
+			gRes= new MarkLogicBackgroundGraphResult(parser,stream,charset,qdef.getBaseUri(),metrics,trace);
 		}else{
-			gRes= new MarkLogicBackgroundGraphResult(parser,stream,charset,"");
+			gRes= new MarkLogicBackgroundGraphResult(parser,stream,charset,"",metrics,trace);
 		}
 
+		if (deadline > 0) {
+			MarkLogicBackgroundGraphResult res = gRes;
+			gRes.setTimeout(queryTimer.schedule(() -> execute(res::interrupt), remaining(deadline), TimeUnit.MILLISECONDS));
+		}
 		execute(gRes);
 		return gRes;
 	}
@@ -268,7 +640,57 @@ public class MarkLogicClient {
 	 */
 	public boolean sendBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, RepositoryException, MalformedQueryException,
 			QueryInterruptedException {
-		return getClient().performBooleanQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+		return sendBooleanQuery(newQueryDefinition(queryString, baseURI, includeInferred));
+	}
+
+	/**
+	 * BooleanQuery from a prepared query template.
+	 *
+	 * @param qdef
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public boolean sendBooleanQuery(SPARQLQueryDefinition qdef) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		return sendBooleanQuery(qdef, 0);
+	}
+
+	/**
+	 * BooleanQuery from a prepared query template, abandoned once maxExecutionTime
+	 * seconds have passed (0 or less means no limit).
+	 *
+	 * @param qdef
+	 * @param maxExecutionTime
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public boolean sendBooleanQuery(SPARQLQueryDefinition qdef, int maxExecutionTime) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		return sendBooleanQuery(qdef, maxExecutionTime, newTrace(Operation.ASK));
+	}
+
+	/**
+	 * BooleanQuery from a prepared query template, traced from trace's start.
+	 *
+	 * @param qdef
+	 * @param maxExecutionTime
+	 * @param trace
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public boolean sendBooleanQuery(SPARQLQueryDefinition qdef, int maxExecutionTime, MarkLogicQueryTrace trace) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		trace.prepared(qdef.getSparql());
+		bytesSent(Operation.ASK, qdef);
+		boolean result = traced(trace, () -> timed(Operation.ASK, () -> withTimeout(() -> retry(() -> getClient().performBooleanQuery(qdef, context)), maxExecutionTime)));
+		trace.completed(null);
+		return result;
 	}
 
 	/**
@@ -285,11 +707,125 @@ public class MarkLogicClient {
 	 * @throws UpdateExecutionException
 	 */
 	public void sendUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, RepositoryException, MalformedQueryException,UpdateExecutionException {
-		getClient().performUpdateQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+		sendUpdateQuery(newUpdateDefinition(queryString, baseURI, includeInferred));
 	}
 
 	/**
-	 * Add triples from file.
+	 * UpdateQuery from a prepared query template.
+	 *
+	 * @param qdef
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws UpdateExecutionException
+	 */
+	public void sendUpdateQuery(SPARQLQueryDefinition qdef) throws RepositoryException, MalformedQueryException,UpdateExecutionException {
+		sendUpdateQuery(qdef, 0);
+	}
+
+	/**
+	 * UpdateQuery from a prepared query template, abandoned once maxExecutionTime
+	 * seconds have passed (0 or less means no limit).
+	 *
+	 * @param qdef
+	 * @param maxExecutionTime
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws UpdateExecutionException
+	 * @throws QueryInterruptedException
+	 */
+	public void sendUpdateQuery(SPARQLQueryDefinition qdef, int maxExecutionTime) throws RepositoryException, MalformedQueryException,UpdateExecutionException {
+		sendUpdateQuery(qdef, maxExecutionTime, newTrace(Operation.UPDATE));
+	}
+
+	/**
+	 * UpdateQuery from a prepared query template, traced from trace's start.
+	 * An update exceeding maxExecutionTime is abandoned, not cancelled, and may
+	 * still be applied by the server. Inside a transaction it may still be
+	 * running against it, so the transaction can then only be rolled back.
+	 *
+	 * @param qdef
+	 * @param maxExecutionTime
+	 * @param trace
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws UpdateExecutionException
+	 * @throws QueryInterruptedException
+	 */
+	public void sendUpdateQuery(SPARQLQueryDefinition qdef, int maxExecutionTime, MarkLogicQueryTrace trace) throws RepositoryException, MalformedQueryException,UpdateExecutionException {
+		checkNotRollbackOnly();
+		trace.prepared(qdef.getSparql());
+		bytesSent(Operation.UPDATE, qdef);
+		try {
+			traced(trace, () -> timed(Operation.UPDATE, () -> withTimeout(() -> {
+				getClient().performUpdateQuery(qdef, context);
+				return null;
+			}, maxExecutionTime)));
+		} catch (QueryInterruptedException e) {
+			if (isActiveTransaction()) {
+				rollbackOnly = true;
+			}
+			throw e;
+		} finally {
+			invalidateAll();
+		}
+		trace.completed(null);
+	}
+
+	/**
+	 * Sends an INSERT DATA or DELETE DATA update built by the write caches.
+	 * Unlike sendUpdateQuery, statistics have already been adjusted for these triples.
+	 *
+	 * @param operation INSERT_DATA or DELETE_DATA
+	 * @param queryString
+	 * @throws MarkLogicRdf4jException
+	 */
+	void sendDataUpdate(Operation operation, String queryString) throws MarkLogicRdf4jException {
+		SPARQLQueryDefinition qdef = newUpdateDefinition(queryString, null, false);
+		bytesSent(operation, qdef);
+		timed(operation, () -> retry(() -> {
+			getClient().performUpdateQuery(qdef, context);
+			return null;
+		}));
+	}
+
+	/**
+	 * Enables buffering of adds and removes made inside transactions, shipped
+	 * as a few large requests on sync or commit. Applies to transactions opened afterwards.
+	 *
+	 * @param enabled
+	 * @param memoryLimit statements held in memory before spilling to disk
+	 * @param batchSize statements per update request
+	 */
+	public void setTransactionBuffering(boolean enabled, long memoryLimit, long batchSize) {
+		this.txBuffering = enabled;
+		this.txBufferMemoryLimit = memoryLimit;
+		this.txBufferBatchSize = batchSize;
+	}
+
+	public boolean isTransactionBuffering() {
+		return txBuffering;
+	}
+
+	/**
+	 * Ships buffered transaction operations ahead of an operation which must follow them.
+	 *
+	 * @throws MarkLogicRdf4jException
+	 */
+	private void flushTransactionBuffer() throws MarkLogicRdf4jException {
+		checkNotRollbackOnly();
+		if (txBuffer != null) {
+			txBuffer.flush();
+		}
+	}
+
+	private void checkNotRollbackOnly() throws MarkLogicRdf4jException {
+		if (rollbackOnly && isActiveTransaction()) {
+			throw new MarkLogicRdf4jException("An update timed out inside the transaction and may still be running, the transaction must be rolled back.");
+		}
+	}
+
+	/**
+	 * Add triples from file. Gzipped files are inflated as they are uploaded.
 	 *
 	 * @param file
 	 * @param baseURI
@@ -299,7 +835,25 @@ public class MarkLogicClient {
 	 */
 	public void sendAdd(File file, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException {
         if(util.isFormatSupported(dataFormat)) {
-            getClient().performAdd(file, baseURI, dataFormat, this.tx, contexts);
+            flushTransactionBuffer();
+            if (isGzipped(file)) {
+                timed(Operation.LOAD, () -> retry(() -> {
+                    try (CountingInputStream in = new CountingInputStream(new GZIPInputStream(new FileInputStream(file), GZIP_BUFFER_SIZE))) {
+                        getClient().performAdd(in, baseURI, dataFormat, context, contexts);
+                        metrics.bytesSent(Operation.LOAD, in.getByteCount());
+                    } catch (IOException e) {
+                        throw new MarkLogicRdf4jException("Could not read gzipped file " + file + ".", e);
+                    }
+                    return null;
+                }));
+            } else {
+                metrics.bytesSent(Operation.LOAD, file.length());
+                timed(Operation.LOAD, () -> retry(() -> {
+                    getClient().performAdd(file, baseURI, dataFormat, context, contexts);
+                    return null;
+                }));
+            }
+            loaded(dataFormat, contexts);
         }
         else
         {
@@ -308,7 +862,7 @@ public class MarkLogicClient {
 	}
 
 	/**
-	 * Add triples from InputStream.
+	 * Add triples from InputStream. Gzipped streams are inflated as they are uploaded.
 	 *
 	 * @param in
 	 * @param baseURI
@@ -317,7 +871,12 @@ public class MarkLogicClient {
 	 */
 	public void sendAdd(InputStream in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
         if(util.isFormatSupported(dataFormat)) {
-            getClient().performAdd(in, baseURI, dataFormat, this.tx, contexts);
+            flushTransactionBuffer();
+            try {
+                load(inflating(in), baseURI, dataFormat, contexts);
+            } catch (IOException e) {
+                throw new MarkLogicRdf4jException("Could not read stream.", e);
+            }
         }
         else
         {
@@ -336,7 +895,8 @@ public class MarkLogicClient {
 	public void sendAdd(Reader in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
         if(util.isFormatSupported(dataFormat)) {
             //TBD- must deal with char encoding
-            getClient().performAdd(new ReaderInputStream(in, Charset.defaultCharset()), baseURI, dataFormat, this.tx, contexts);
+            flushTransactionBuffer();
+            load(new ReaderInputStream(in, Charset.defaultCharset()), baseURI, dataFormat, contexts);
         }
         else
         {
@@ -344,6 +904,64 @@ public class MarkLogicClient {
         }
 	}
 
+	private static boolean isGzipped(File file) {
+		try (InputStream in = new FileInputStream(file)) {
+			return in.read() == GZIP_MAGIC_1 && in.read() == GZIP_MAGIC_2;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	// inflates gzipped data as it is read, recognized by its magic number
+	private static InputStream inflating(InputStream in) throws IOException {
+		InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in, GZIP_BUFFER_SIZE);
+		buffered.mark(2);
+		boolean gzipped = buffered.read() == GZIP_MAGIC_1 && buffered.read() == GZIP_MAGIC_2;
+		buffered.reset();
+		return gzipped ? new GZIPInputStream(buffered, GZIP_BUFFER_SIZE) : buffered;
+	}
+
+	/**
+	 * Merges triples from a stream, counting bytes sent.
+	 *
+	 * @param in
+	 * @param baseURI
+	 * @param dataFormat
+	 * @param contexts
+	 */
+	private void load(InputStream in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
+		CountingInputStream counted = new CountingInputStream(in);
+		try {
+			timed(Operation.LOAD, () -> {
+				getClient().performAdd(counted, baseURI, dataFormat, context, contexts);
+				return null;
+			});
+		} finally {
+			metrics.bytesSent(Operation.LOAD, counted.getByteCount());
+		}
+		loaded(dataFormat, contexts);
+	}
+
+	/**
+	 * Merges N-Quads into their graphs, used to ship spilled transaction
+	 * buffers without parsing them back. Statistics and graph cache were
+	 * updated as the statements were buffered. Graph permissions are not
+	 * sent, callers must use data updates when they are set.
+	 *
+	 * @param in
+	 */
+	void sendQuads(InputStream in) throws MarkLogicRdf4jException {
+		CountingInputStream counted = new CountingInputStream(in);
+		try {
+			timed(Operation.INSERT_DATA, () -> {
+				getClient().performAdd(counted, null, RDFFormat.NQUADS, context);
+				return null;
+			});
+		} finally {
+			metrics.bytesSent(Operation.INSERT_DATA, counted.getByteCount());
+		}
+	}
+
 	/**
 	 * Add single triple, if cache is enabled will add triple to cache model.
 	 *
@@ -354,10 +972,21 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendAdd(String baseURI, Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
-		if (WRITE_CACHE_ENABLED) {
+		if (txBuffer != null) {
+			txBuffer.add((Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), contexts);
+		} else if (WRITE_CACHE_ENABLED) {
 			timerWriteCache.add((Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), contexts);
 		} else {
-			getClient().performAdd(baseURI, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), this.tx, contexts);
+			timed(Operation.ADD, () -> retry(() -> {
+				getClient().performAdd(baseURI, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), context, contexts);
+				return null;
+			}));
+		}
+		if (Util.notNull(statistics)) {
+			statistics.added(contexts);
+		}
+		if (Util.notNull(graphCache)) {
+			graphCache.added(contexts);
 		}
 	}
 
@@ -371,12 +1000,30 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendRemove(String baseURI, Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
-		if (DELETE_CACHE_ENABLED) {
+		if (txBuffer != null && Util.notNull(subject) && Util.notNull(predicate) && Util.notNull(object)) {
+			txBuffer.remove((Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), contexts);
+		} else if (DELETE_CACHE_ENABLED) {
 			timerDeleteCache.add((Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), contexts);
 		} else {
 			if (WRITE_CACHE_ENABLED)
 				sync();
-			getClient().performRemove(baseURI, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), this.tx, contexts);
+			timed(Operation.REMOVE, () -> {
+				getClient().performRemove(baseURI, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), context, contexts);
+				return null;
+			});
+		}
+		if (Util.notNull(statistics)) {
+			if (Util.notNull(subject) && Util.notNull(predicate) && Util.notNull(object)) {
+				statistics.removed(contexts);
+			} else if (contexts.length > 0) {
+				statistics.invalidate(contexts);
+			} else {
+				statistics.invalidate();
+			}
+		}
+		// a graph may have been emptied
+		if (Util.notNull(graphCache)) {
+			graphCache.invalidate();
 		}
 	}
 
@@ -386,7 +1033,17 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendClear(Resource... contexts) throws MarkLogicRdf4jException {
-		getClient().performClear(this.tx, contexts);
+		flushTransactionBuffer();
+		timed(Operation.CLEAR, () -> {
+			getClient().performClear(context, contexts);
+			return null;
+		});
+		if (Util.notNull(statistics)) {
+			statistics.cleared(contexts);
+		}
+		if (Util.notNull(graphCache)) {
+			graphCache.cleared(contexts);
+		}
 	}
 
 	/**
@@ -394,25 +1051,45 @@ public class MarkLogicClient {
 	 *
 	 */
 	public void sendClearAll() throws MarkLogicRdf4jException {
-		getClient().performClearAll(this.tx);
+		flushTransactionBuffer();
+		timed(Operation.CLEAR, () -> {
+			getClient().performClearAll(context);
+			return null;
+		});
+		if (Util.notNull(statistics)) {
+			statistics.clearedAll();
+		}
+		if (Util.notNull(graphCache)) {
+			graphCache.clearedAll();
+		}
 	}
 
 	/**
-	 * Opens a transaction.
+	 * Opens a transaction, first flushing the write and delete caches so
+	 * writes made before it are not sent within it.
 	 *
 	 * @throws MarkLogicTransactionException
 	 */
 	public void openTransaction() throws MarkLogicTransactionException {
 		if (!isActiveTransaction()) {
 			try {
-                this.tx = getClient().getDatabaseClient().openTransaction();
+                sync();
+            } catch (MarkLogicRdf4jException e) {
+                throw new MarkLogicTransactionException(e);
+            }
+			try {
+                context.setTransaction(getClient().getDatabaseClient().openTransaction());
+                rollbackOnly = false;
+                if (txBuffering) {
+                    this.txBuffer = new TripleTransactionBuffer(this, txBufferMemoryLimit, txBufferBatchSize);
+                }
             }
             catch (ForbiddenUserException e)
             {
                 throw new RepositoryException(e.getMessage());
             }
 		}else{
-			throw new MarkLogicTransactionException("Only one active transaction allowed.");
+			throw new MarkLogicTransactionException("Only one active transaction allowed per connection.");
 		}
 	}
 
@@ -425,8 +1102,9 @@ public class MarkLogicClient {
 		if (isActiveTransaction()) {
 			try {
 				sync();
-				this.tx.commit();
-				this.tx=null;
+				this.txBuffer = null;
+				context.getTransaction().commit();
+				context.setTransaction(null);
 			} catch (MarkLogicRdf4jException e) {
 				logger.error(e.getLocalizedMessage());
 				throw new MarkLogicTransactionException(e);
@@ -437,19 +1115,28 @@ public class MarkLogicClient {
 	}
 
 	/**
-	 * Rollback transaction.
+	 * Rollback transaction. Cached writes are dropped rather than sent, the
+	 * caches only holding writes of this transaction since it was opened.
 	 *
 	 * @throws MarkLogicTransactionException
 	 */
 	public void rollbackTransaction() throws MarkLogicTransactionException {
 		if(isActiveTransaction()) {
-			try {
-				sync();
-			} catch (MarkLogicRdf4jException e) {
-				throw new MarkLogicTransactionException(e);
+			if (txBuffer != null) {
+				// never shipped, nothing to undo on the server
+				txBuffer.discard();
+				txBuffer = null;
+			}
+			if (WRITE_CACHE_ENABLED && timerWriteCache != null) {
+				timerWriteCache.discard();
 			}
-			this.tx.rollback();
-			this.tx = null;
+			if (DELETE_CACHE_ENABLED && timerDeleteCache != null) {
+				timerDeleteCache.discard();
+			}
+			context.getTransaction().rollback();
+			context.setTransaction(null);
+			rollbackOnly = false;
+			invalidateAll();
 		}else{
 			throw new MarkLogicTransactionException("No active transaction to rollback.");
 		}
@@ -461,13 +1148,22 @@ public class MarkLogicClient {
 	 *
 	 */
 	public boolean isActiveTransaction(){
-		return this.tx != null;
+		return context.getTransaction() != null;
 	}
 
 	public Transaction getTransaction() {
-        return tx;
+        return context.getTransaction();
     }
 
+	/**
+	 * Returns the transaction and query settings applied to requests from this client.
+	 *
+	 * @return MarkLogicRequestContext
+	 */
+	public MarkLogicRequestContext getRequestContext() {
+		return context;
+	}
+
     /**
 	 * sets transaction (tx) to null
 	 *
@@ -477,7 +1173,7 @@ public class MarkLogicClient {
 		if (isActiveTransaction()) {
 			throw new MarkLogicTransactionException("Active transaction.");
 		}else{
-			this.tx=null;
+			context.setTransaction(null);
 		}
 	}
 
@@ -511,16 +1207,16 @@ public class MarkLogicClient {
             {
                 SPARQLRuleset[] resultantRuleset = Arrays.copyOf(rulesets, rulesets.length + defaultRulesets.length);
                 System.arraycopy(defaultRulesets, 0, resultantRuleset, rulesets.length, defaultRulesets.length);
-                getClient().setRulesets(resultantRuleset);
+                context.setRulesets(resultantRuleset);
             }
             else
             {
-                getClient().setRulesets(this.defaultRulesets);
+                context.setRulesets(this.defaultRulesets);
             }
         }
         else
         {
-            getClient().setRulesets(rulesets);
+            context.setRulesets(rulesets);
         }
 	}
 
@@ -530,7 +1226,7 @@ public class MarkLogicClient {
 	 * @return
 	 */
 	public SPARQLRuleset[] getRulesets(){
-		return getClient().getRulesets();
+		return context.getRulesets();
 	}
 
 	public void setDefaultRulesets(SPARQLRuleset... rulesets)
@@ -543,11 +1239,11 @@ public class MarkLogicClient {
 	}
 
     public Integer getOptimizeLevel() {
-        return getClient().getOptimizeLevel();
+        return context.getOptimizeLevel();
     }
 
     public void setOptimizeLevel(Integer optimizeLevel) {
-        getClient().setOptimizeLevel(optimizeLevel);
+        context.setOptimizeLevel(optimizeLevel);
     }
 
 	/**
@@ -556,7 +1252,7 @@ public class MarkLogicClient {
 	 * @param constrainingQueryDefinition
 	 */
 	public void setConstrainingQueryDefinition(QueryDefinition constrainingQueryDefinition){
-		getClient().setConstrainingQueryDefinition(constrainingQueryDefinition);
+		context.setConstrainingQueryDefinition(constrainingQueryDefinition);
 	}
 
 	/**
@@ -565,7 +1261,7 @@ public class MarkLogicClient {
 	 * @return
 	 */
 	public QueryDefinition getConstrainingQueryDefinition(){
-		return getClient().getConstrainingQueryDefinition();
+		return context.getConstrainingQueryDefinition();
 	}
 
 	/**
@@ -576,9 +1272,9 @@ public class MarkLogicClient {
 	public void setGraphPerms(GraphPermissions graphPerms){
 
 		if (graphPerms != null) {
-			getClient().setGraphPerms(graphPerms);
+			context.setGraphPerms(graphPerms);
 		}else {
-			getClient().setGraphPerms(getClient().getDatabaseClient().newGraphManager().newGraphPermissions());
+			context.setGraphPerms(getClient().getDatabaseClient().newGraphManager().newGraphPermissions());
 		}
 	}
 
@@ -588,7 +1284,7 @@ public class MarkLogicClient {
 	 * @return
 	 */
 	public GraphPermissions getGraphPerms(){
-		return getClient().getGraphPerms();
+		return context.getGraphPerms();
 	}
 
 	public GraphPermissions emptyGraphPerms(){
@@ -603,6 +1299,256 @@ public class MarkLogicClient {
 		executor.execute(command);
 	}
 
+	/**
+	 * Runs request on the async executor, falling back to the client's own
+	 * executor when none is set.
+	 *
+	 * @param request
+	 * @return CompletableFuture
+	 */
+	public <T> CompletableFuture<T> executeAsync(Supplier<T> request) {
+		return CompletableFuture.supplyAsync(request, getAsyncExecutor());
+	}
+
+	/**
+	 * Sets executor used by executeAsync.
+	 *
+	 * @param asyncExecutor
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	/**
+	 * Sets statistics notified of writes made through this client.
+	 *
+	 * @param statistics
+	 */
+	public void setStatistics(MarkLogicRepositoryStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Sets graph cache notified of writes made through this client.
+	 *
+	 * @param graphCache
+	 */
+	public void setGraphCache(MarkLogicGraphCache graphCache) {
+		this.graphCache = graphCache;
+	}
+
+	/**
+	 * Sets retry policy applied to idempotent requests made through this client.
+	 *
+	 * @param retryPolicy
+	 */
+	public void setRetryPolicy(MarkLogicRetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * Sets metrics receiving measurements of requests made through this client.
+	 *
+	 * @param metrics
+	 */
+	public void setMetrics(MarkLogicMetrics metrics) {
+		this.metrics = metrics != null ? metrics : MarkLogicMetrics.NOOP;
+	}
+
+	/**
+	 * getter for metrics
+	 *
+	 * @return MarkLogicMetrics
+	 */
+	public MarkLogicMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets listeners receiving traces of queries and updates made through this client.
+	 *
+	 * @param queryListeners
+	 */
+	public void setQueryListeners(List<MarkLogicQueryListener> queryListeners) {
+		this.queryListeners = queryListeners != null ? queryListeners : Collections.emptyList();
+	}
+
+	/**
+	 * Starts tracing a query or update, timing its preparation from now.
+	 *
+	 * @param operation
+	 * @return MarkLogicQueryTrace
+	 */
+	public MarkLogicQueryTrace newTrace(Operation operation) {
+		return new MarkLogicQueryTrace(operation, queryListeners);
+	}
+
+	/**
+	 * Runs a request, ending the trace's FIRST_BYTE phase once it returns or
+	 * completing the trace if it fails.
+	 *
+	 * @param trace
+	 * @param request
+	 * @param <T>
+	 * @return T
+	 */
+	private <T> T traced(MarkLogicQueryTrace trace, Supplier<T> request) {
+		T result;
+		try {
+			result = request.get();
+		} catch (RuntimeException e) {
+			trace.completed(e);
+			throw e;
+		}
+		trace.responded();
+		return result;
+	}
+
+	/**
+	 * Runs a request, recording its latency and outcome.
+	 *
+	 * @param operation
+	 * @param request
+	 * @param <T>
+	 * @return T
+	 */
+	private <T> T timed(Operation operation, Supplier<T> request) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			T result = request.get();
+			failed = false;
+			return result;
+		} finally {
+			metrics.requestCompleted(operation, System.nanoTime() - start, failed);
+		}
+	}
+
+	private void bytesSent(Operation operation, SPARQLQueryDefinition qdef) {
+		if (qdef.getSparql() != null) {
+			metrics.bytesSent(operation, qdef.getSparql().getBytes(UTF8).length);
+		}
+	}
+
+	/**
+	 * Runs an idempotent request under the retry policy. Requests inside a
+	 * transaction are never retried, the outcome of a failed request within
+	 * it being for the caller to resolve.
+	 *
+	 * @param request
+	 * @param <T>
+	 * @return T
+	 */
+	private <T> T retry(Supplier<T> request) {
+		MarkLogicRetryPolicy policy = this.retryPolicy;
+		if (policy == null || isActiveTransaction()) {
+			return request.get();
+		}
+		return policy.execute(request);
+	}
+
+	/**
+	 * Records a bulk load of unknown size, quad formats touching any graph.
+	 *
+	 * @param dataFormat
+	 * @param contexts
+	 */
+	private void loaded(RDFFormat dataFormat, Resource... contexts) {
+		if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
+			invalidateAll();
+			return;
+		}
+		if (Util.notNull(statistics)) {
+			statistics.invalidate(contexts);
+		}
+		if (Util.notNull(graphCache)) {
+			graphCache.added(contexts);
+		}
+	}
+
+	/**
+	 * Records a write which may have touched any graph.
+	 */
+	private void invalidateAll() {
+		if (Util.notNull(statistics)) {
+			statistics.invalidate();
+		}
+		if (Util.notNull(graphCache)) {
+			graphCache.invalidate();
+		}
+	}
+
+	/**
+	 * Returns executor used by executeAsync.
+	 *
+	 * @return Executor
+	 */
+	public Executor getAsyncExecutor() {
+		return asyncExecutor != null ? asyncExecutor : executor;
+	}
+
+	/**
+	 * Runs a blocking request, waiting at most maxExecutionTime seconds for it
+	 * (0 or less means no limit). The request is run on the calling thread when
+	 * there is no limit. On timeout the request keeps running to completion on
+	 * the executor, as the Java Client API cannot cancel it; a timed out update
+	 * leaves an open transaction rollback only.
+	 *
+	 * @param request
+	 * @param maxExecutionTime
+	 * @return
+	 * @throws QueryInterruptedException
+	 */
+	private <T> T withTimeout(Supplier<T> request, int maxExecutionTime) throws QueryInterruptedException {
+		if (maxExecutionTime <= 0) {
+			return request.get();
+		}
+		CompletableFuture<T> future = CompletableFuture.supplyAsync(request, executor);
+		try {
+			return future.get(maxExecutionTime, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			// a late response is released as soon as it arrives
+			future.thenAccept(MarkLogicClient::closeQuietly);
+			throw new QueryInterruptedException("Query exceeded max execution time of " + maxExecutionTime + "s");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new QueryInterruptedException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new MarkLogicRdf4jException(e);
+		}
+	}
+
+	private static void closeQuietly(Object response) {
+		if (response instanceof Closeable) {
+			try {
+				((Closeable) response).close();
+			} catch (IOException e) {
+				logger.debug("Failed closing abandoned response", e);
+			}
+		}
+	}
+
+	private static long deadline(int maxExecutionTime) {
+		return maxExecutionTime > 0 ? System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(maxExecutionTime) : 0;
+	}
+
+	private static long remaining(long deadline) {
+		return Math.max(0, deadline - System.currentTimeMillis());
+	}
+
+	private static ScheduledThreadPoolExecutor newQueryTimer() {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, "marklogic-query-timer");
+			t.setDaemon(true);
+			return t;
+		});
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+
 	/**
 	 *
 	 */
@@ -619,12 +1565,14 @@ public class MarkLogicClient {
 	 *
 	 */
 	public void close() {
+		executor.shutdown();
 		_client.close();
 	}
 	/**
 	 *
 	 */
 	public void release() {
+		executor.shutdown();
 		_client.release();
 	}
 }
\ No newline at end of file
@@ -24,9 +24,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Locale;
+import java.util.function.BiFunction;
 
 import com.marklogic.semantics.rdf4j.utils.Util;
 import org.eclipse.rdf4j.model.IRI;
@@ -45,7 +46,6 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.FailedRequestException;
 import com.marklogic.client.ForbiddenUserException;
-import com.marklogic.client.Transaction;
 import com.marklogic.client.impl.SPARQLBindingsImpl;
 import com.marklogic.client.io.FileHandle;
 import com.marklogic.client.io.InputStreamHandle;
@@ -57,6 +57,7 @@ import com.marklogic.client.semantics.SPARQLBindings;
 import com.marklogic.client.semantics.SPARQLQueryDefinition;
 import com.marklogic.client.semantics.SPARQLQueryManager;
 import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.MarkLogicLoadBalancer;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 
 /**
@@ -70,16 +71,13 @@ public class MarkLogicClientImpl {
 
     private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
 
-    private SPARQLRuleset[] ruleset;
-    private Integer optimizeLevel;
-    private QueryDefinition constrainingQueryDef;
-    private GraphPermissions graphPerms;
-
     private SPARQLQueryManager sparqlManager;
     private GraphManager graphManager;
 
     private DatabaseClient databaseClient;
 
+    private volatile MarkLogicLoadBalancer loadBalancer;
+
     private Util util = Util.getInstance();
 
     /**
@@ -124,6 +122,77 @@ public class MarkLogicClientImpl {
         return this.databaseClient;
     }
 
+    /**
+     * Builds a SPARQLQueryDefinition template for SELECT, CONSTRUCT, DESCRIBE and ASK queries,
+     * applying base uri, rulesets, constraining query, graph permissions and optimize level.
+     *
+     * @param queryString
+     * @param baseURI
+     * @param includeInferred
+     * @return SPARQLQueryDefinition
+     */
+    public SPARQLQueryDefinition newQueryDefinition(MarkLogicRequestContext context, String queryString, String baseURI, boolean includeInferred) {
+        SPARQLQueryDefinition qdef = newUpdateDefinition(context, queryString, baseURI, includeInferred);
+        QueryDefinition constrainingQueryDef = context.getConstrainingQueryDefinition();
+        if (Util.notNull(constrainingQueryDef)) {
+            qdef.setConstrainingQueryDefinition(constrainingQueryDef);
+            qdef.setDirectory(constrainingQueryDef.getDirectory());
+            qdef.setCollections(constrainingQueryDef.getCollections());
+            qdef.setResponseTransform(constrainingQueryDef.getResponseTransform());
+            qdef.setOptionsName(constrainingQueryDef.getOptionsName());
+        }
+        return qdef;
+    }
+
+    /**
+     * Builds a SPARQLQueryDefinition template for SPARQL updates, which are never constrained.
+     *
+     * @param queryString
+     * @param baseURI
+     * @param includeInferred
+     * @return SPARQLQueryDefinition
+     */
+    public SPARQLQueryDefinition newUpdateDefinition(MarkLogicRequestContext context, String queryString, String baseURI, boolean includeInferred) {
+        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+        if (Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
+        SPARQLRuleset[] rulesets = context.getRulesets();
+        GraphPermissions graphPerms = context.getGraphPerms();
+        Integer optimizeLevel = context.getOptimizeLevel();
+        if (Util.notNull(rulesets) && includeInferred) {qdef.setRulesets(rulesets);}
+        if (Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
+        if (Util.notNull(optimizeLevel)){ qdef.setOptimizeLevel(optimizeLevel); }
+        qdef.setIncludeDefaultRulesets(includeInferred);
+        return qdef;
+    }
+
+    /**
+     * Copies the settings of a SPARQLQueryDefinition template, as applied by
+     * newQueryDefinition or newUpdateDefinition, to a new definition of queryString,
+     * so each evaluation sends its own definition while the template stays untouched.
+     *
+     * @param template
+     * @param queryString
+     * @return SPARQLQueryDefinition
+     */
+    public SPARQLQueryDefinition copyQueryDefinition(SPARQLQueryDefinition template, String queryString) {
+        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+        if (Util.notNull(template.getBaseUri())) { qdef.setBaseUri(template.getBaseUri()); }
+        SPARQLRuleset[] rulesets = template.getRulesets();
+        if (Util.notNull(rulesets) && rulesets.length > 0) { qdef.setRulesets(rulesets); }
+        if (Util.notNull(template.getUpdatePermissions())) { qdef.setUpdatePermissions(template.getUpdatePermissions()); }
+        if (template.getOptimizeLevel() >= 0) { qdef.setOptimizeLevel(template.getOptimizeLevel()); }
+        qdef.setIncludeDefaultRulesets(template.getIncludeDefaultRulesets());
+        QueryDefinition constrainingQueryDef = template.getConstrainingQueryDefinition();
+        if (Util.notNull(constrainingQueryDef)) {
+            qdef.setConstrainingQueryDefinition(constrainingQueryDef);
+            qdef.setDirectory(template.getDirectory());
+            qdef.setCollections(template.getCollections());
+            qdef.setResponseTransform(template.getResponseTransform());
+            qdef.setOptionsName(template.getOptionsName());
+        }
+        return qdef;
+    }
+
     /**
      * Executes SPARQLQuery
      *
@@ -131,14 +200,14 @@ public class MarkLogicClientImpl {
      * @param bindings
      * @param start
      * @param pageLength
-     * @param tx
+     * @param context
      * @param includeInferred
      * @param baseURI
      * @return
      * @throws JsonProcessingException
      */
-    public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, long start, long pageLength, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException {
-        return performSPARQLQuery(queryString, bindings, new InputStreamHandle(), start, pageLength, tx, includeInferred, baseURI);
+    public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, long start, long pageLength, MarkLogicRequestContext context, boolean includeInferred, String baseURI) throws JsonProcessingException {
+        return performSPARQLQuery(queryString, bindings, new InputStreamHandle(), start, pageLength, context, includeInferred, baseURI);
     }
 
     /**
@@ -149,47 +218,51 @@ public class MarkLogicClientImpl {
      * @param handle
      * @param start
      * @param pageLength
-     * @param tx
+     * @param context
      * @param includeInferred
      * @param baseURI
      * @return
      * @throws JsonProcessingException
      */
-    public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, long start, long pageLength, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        if (Util.notNull(ruleset) && includeInferred){qdef.setRulesets(ruleset);}
-        if (Util.notNull(getConstrainingQueryDefinition())) {
-        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
-            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
-            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
-            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
-            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
-        }
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        if (Util.notNull(optimizeLevel)){ qdef.setOptimizeLevel(optimizeLevel); }
-        if(pageLength > 0){
-            sparqlManager.setPageLength(pageLength);
-        }else{
-            sparqlManager.clearPageLength();
-        }
-        sparqlManager.executeSelect(qdef, handle, start, tx);
-        return new BufferedInputStream(handle.get());
+    public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, long start, long pageLength, MarkLogicRequestContext context, boolean includeInferred, String baseURI) throws JsonProcessingException {
+        return performSPARQLQuery(newQueryDefinition(context, queryString, baseURI, includeInferred), handle, start, pageLength, context);
+    }
+
+    /**
+     * Executes SPARQLQuery from a prepared SPARQLQueryDefinition.
+     *
+     * @param qdef
+     * @param handle
+     * @param start
+     * @param pageLength
+     * @param context
+     * @return
+     */
+    public InputStream performSPARQLQuery(SPARQLQueryDefinition qdef, InputStreamHandle handle, long start, long pageLength, MarkLogicRequestContext context) {
+        return performStreamingRead(context, (client, manager) -> {
+            // page length is manager state, so paged queries get their own manager
+            // rather than changing the shared one under concurrent requests
+            if(pageLength > 0){
+                manager = client.newSPARQLQueryManager();
+                manager.setPageLength(pageLength);
+            }
+            manager.executeSelect(qdef, handle, start, context.getTransaction());
+            return new BufferedInputStream(handle.get());
+        });
     }
 
     /**
      * Executes GraphQuery
      * @param queryString
      * @param bindings
-     * @param tx
+     * @param context
      * @param includeInferred
      * @param baseURI
      * @return
      * @throws JsonProcessingException
      */
-    public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException {
-        return performGraphQuery(queryString, bindings, new InputStreamHandle(), tx, includeInferred, baseURI);
+    public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, MarkLogicRequestContext context, boolean includeInferred, String baseURI) throws JsonProcessingException {
+        return performGraphQuery(queryString, bindings, new InputStreamHandle(), context, includeInferred, baseURI);
     }
 
     /**
@@ -198,28 +271,29 @@ public class MarkLogicClientImpl {
      * @param queryString
      * @param bindings
      * @param handle
-     * @param tx
+     * @param context
      * @param includeInferred
      * @param baseURI
      * @return
      * @throws JsonProcessingException
      */
-    public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException  {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if (Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        if (Util.notNull(ruleset) && includeInferred) {qdef.setRulesets(ruleset);}
-        if (Util.notNull(getConstrainingQueryDefinition())){
-        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
-            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
-            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
-            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
-            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
-        	}
-        if (Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        if (Util.notNull(optimizeLevel)){ qdef.setOptimizeLevel(optimizeLevel); }
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        sparqlManager.executeDescribe(qdef, handle, tx);
-        return new BufferedInputStream(handle.get());
+    public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, MarkLogicRequestContext context, boolean includeInferred, String baseURI) throws JsonProcessingException  {
+        return performGraphQuery(newQueryDefinition(context, queryString, baseURI, includeInferred), handle, context);
+    }
+
+    /**
+     * Executes GraphQuery from a prepared SPARQLQueryDefinition.
+     *
+     * @param qdef
+     * @param handle
+     * @param context
+     * @return
+     */
+    public InputStream performGraphQuery(SPARQLQueryDefinition qdef, InputStreamHandle handle, MarkLogicRequestContext context) {
+        return performStreamingRead(context, (client, manager) -> {
+            manager.executeDescribe(qdef, handle, context.getTransaction());
+            return new BufferedInputStream(handle.get());
+        });
     }
 
     /**
@@ -227,26 +301,56 @@ public class MarkLogicClientImpl {
      *
      * @param queryString
      * @param bindings
-     * @param tx
+     * @param context
      * @param includeInferred
      * @param baseURI
      * @return
      */
-    public boolean performBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI) {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        if (Util.notNull(optimizeLevel)){ qdef.setOptimizeLevel(optimizeLevel); }
-        if (Util.notNull(ruleset) && includeInferred) {qdef.setRulesets(ruleset);}
-        if (Util.notNull(getConstrainingQueryDefinition())){
-        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
-            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
-            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
-            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
-            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
-        	}
-        if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        return sparqlManager.executeAsk(qdef,tx);
+    public boolean performBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, MarkLogicRequestContext context, boolean includeInferred, String baseURI) {
+        return performBooleanQuery(newQueryDefinition(context, queryString, baseURI, includeInferred), context);
+    }
+
+    /**
+     * Executes BooleanQuery from a prepared SPARQLQueryDefinition.
+     *
+     * @param qdef
+     * @param context
+     * @return
+     */
+    public boolean performBooleanQuery(SPARQLQueryDefinition qdef, MarkLogicRequestContext context) {
+        return performRead(context, (client, manager) -> manager.executeAsk(qdef, context.getTransaction()));
+    }
+
+    /**
+     * Runs a read on a host chosen by the load balancer, or on this client's
+     * host inside a transaction or without load balancer.
+     *
+     * @param context
+     * @param request
+     * @return
+     */
+    private <T> T performRead(MarkLogicRequestContext context, BiFunction<DatabaseClient, SPARQLQueryManager, T> request) {
+        MarkLogicLoadBalancer balancer = this.loadBalancer;
+        if (balancer == null || Util.notNull(context.getTransaction())) {
+            return request.apply(databaseClient, sparqlManager);
+        }
+        return balancer.execute(request);
+    }
+
+    /**
+     * Runs a read returning a result stream as performRead, the read staying
+     * outstanding on its host until the stream is closed.
+     *
+     * @param context
+     * @param request
+     * @return
+     */
+    private InputStream performStreamingRead(MarkLogicRequestContext context, BiFunction<DatabaseClient, SPARQLQueryManager, InputStream> request) {
+        MarkLogicLoadBalancer balancer = this.loadBalancer;
+        if (balancer == null || Util.notNull(context.getTransaction())) {
+            return request.apply(databaseClient, sparqlManager);
+        }
+        return balancer.executeStreaming(request);
     }
 
     /**
@@ -254,20 +358,23 @@ public class MarkLogicClientImpl {
      *
      * @param queryString
      * @param bindings
-     * @param tx
+     * @param context
      * @param includeInferred
      * @param baseURI
      */
-    public void performUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI) {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if (Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        if (Util.notNull(ruleset) && includeInferred) {qdef.setRulesets(ruleset);}
-        if (Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        if (Util.notNull(optimizeLevel)){qdef.setOptimizeLevel(optimizeLevel);}
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        sparqlManager.clearPageLength();
+    public void performUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, MarkLogicRequestContext context, boolean includeInferred, String baseURI) {
+        performUpdateQuery(newUpdateDefinition(context, queryString, baseURI, includeInferred), context);
+    }
+
+    /**
+     * Executes UpdateQuery from a prepared SPARQLQueryDefinition.
+     *
+     * @param qdef
+     * @param context
+     */
+    public void performUpdateQuery(SPARQLQueryDefinition qdef, MarkLogicRequestContext context) {
         try {
-            sparqlManager.executeUpdate(qdef, tx);
+            sparqlManager.executeUpdate(qdef, context.getTransaction());
         }
         catch (ForbiddenUserException e)
         {
@@ -281,28 +388,29 @@ public class MarkLogicClientImpl {
      * @param file
      * @param baseURI
      * @param dataFormat
-     * @param tx
+     * @param context
      * @param contexts
      * @throws RDFParseException
      */
     // performAdd
     // as we use mergeGraphs, baseURI is always file.toURI
-    public void performAdd(File file, String baseURI, RDFFormat dataFormat, Transaction tx, Resource... contexts) throws RDFParseException {
+    public void performAdd(File file, String baseURI, RDFFormat dataFormat, MarkLogicRequestContext context, Resource... contexts) throws RDFParseException {
         try {
-            graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
+            // mimetype goes on the handle, the graph manager is shared by all connections
+            String mimetype = dataFormat.getDefaultMIMEType();
             if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
-                graphManager.mergeGraphs(new FileHandle(file),tx);
+                graphManager.mergeGraphs(new FileHandle(file).withMimetype(mimetype),context.getTransaction());
             } else {
                 if (contexts.length>0) {
                     for (int i = 0; i < contexts.length; i++) {
                         if(Util.notNull(contexts[i])){
-                            graphManager.mergeAs(contexts[i].toString(), new FileHandle(file), getGraphPerms(),tx);
+                            graphManager.mergeAs(contexts[i].toString(), new FileHandle(file).withMimetype(mimetype), context.getGraphPerms(),context.getTransaction());
                         }else{
-                            graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(), tx);
+                            graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file).withMimetype(mimetype), context.getGraphPerms(), context.getTransaction());
                         }
                     }
                 } else {
-                    graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(),tx);
+                    graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file).withMimetype(mimetype), context.getGraphPerms(),context.getTransaction());
                 }
             }
         } catch (FailedRequestException e) {
@@ -312,31 +420,45 @@ public class MarkLogicClientImpl {
     }
 
     /**
-     * Executes merge of triples from InputStream.
+     * Executes merge of triples from InputStream. Merging into several
+     * contexts reads the triples once per context, so the stream is first
+     * copied to a temporary file.
      *
      * @param in
      * @param baseURI
      * @param dataFormat
-     * @param tx
+     * @param context
      * @param contexts
      * @throws RDFParseException
      */
-    public void performAdd(InputStream in, String baseURI, RDFFormat dataFormat, Transaction tx, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
+    public void performAdd(InputStream in, String baseURI, RDFFormat dataFormat, MarkLogicRequestContext context, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
         try {
-            graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
+            if (contexts.length > 1 && !dataFormat.equals(RDFFormat.NQUADS) && !dataFormat.equals(RDFFormat.TRIG)) {
+                File spool = spool(in);
+                try {
+                    performAdd(spool, baseURI, dataFormat, context, contexts);
+                } finally {
+                    if (!spool.delete()) {
+                        logger.debug("could not delete {}", spool);
+                    }
+                }
+                return;
+            }
+            // mimetype goes on the handle, the graph manager is shared by all connections
+            String mimetype = dataFormat.getDefaultMIMEType();
             if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
-                graphManager.mergeGraphs(new InputStreamHandle(in),tx);
+                graphManager.mergeGraphs(new InputStreamHandle(in).withMimetype(mimetype),context.getTransaction());
             } else {
                 if (contexts.length > 0) {
                     for (int i = 0; i < contexts.length; i++) {
                         if (Util.notNull(contexts[i])) {
-                            graphManager.mergeAs(contexts[i].toString(), new InputStreamHandle(in), getGraphPerms(), tx);
+                            graphManager.mergeAs(contexts[i].toString(), new InputStreamHandle(in).withMimetype(mimetype), context.getGraphPerms(), context.getTransaction());
                         } else {
-                            graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in),getGraphPerms(), tx);
+                            graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in).withMimetype(mimetype),context.getGraphPerms(), context.getTransaction());
                         }
                     }
                 } else {
-                    graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in),getGraphPerms(), tx);
+                    graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in).withMimetype(mimetype),context.getGraphPerms(), context.getTransaction());
                 }
             }
             in.close();
@@ -349,6 +471,19 @@ public class MarkLogicClientImpl {
         }
     }
 
+    // copies in to a temporary file and closes it
+    private static File spool(InputStream in) throws IOException {
+        File spool = File.createTempFile("marklogic-add-", ".tmp");
+        try {
+            Files.copy(in, spool.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            in.close();
+        } catch (IOException e) {
+            spool.delete();
+            throw e;
+        }
+        return spool;
+    }
+
     /**
      * Executes INSERT of single triple.
      *
@@ -356,11 +491,11 @@ public class MarkLogicClientImpl {
      * @param subject
      * @param predicate
      * @param object
-     * @param tx
+     * @param context
      * @param contexts
      * @throws MarkLogicRdf4jException
      */
-    public void performAdd(String baseURI, Resource subject, IRI predicate, Value object, Transaction tx, Resource... contexts) throws MarkLogicRdf4jException {
+    public void performAdd(String baseURI, Resource subject, IRI predicate, Value object, MarkLogicRequestContext context, Resource... contexts) throws MarkLogicRdf4jException {
         StringBuilder sb = new StringBuilder();
         if(contexts.length>0) {
             if (Util.notNull(baseURI)) sb.append("BASE <" + baseURI + ">\n");
@@ -377,14 +512,14 @@ public class MarkLogicClientImpl {
             sb.append("INSERT DATA { GRAPH <" + DEFAULT_GRAPH_URI + "> {?s ?p ?o .}}");
         }  
         SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(sb.toString());
-        if (Util.notNull(ruleset) ) {qdef.setRulesets(ruleset);}
-        if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
+        if (Util.notNull(context.getRulesets()) ) {qdef.setRulesets(context.getRulesets());}
+        if(Util.notNull(context.getGraphPerms())){ qdef.setUpdatePermissions(context.getGraphPerms());}
         if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
 
         if(Util.notNull(subject)) qdef.withBinding("s", subject.stringValue());
         if(Util.notNull(predicate)) qdef.withBinding("p", predicate.stringValue());
         if(Util.notNull(object)) bindObject(qdef, "o", object);
-        sparqlManager.executeUpdate(qdef, tx);
+        sparqlManager.executeUpdate(qdef, context.getTransaction());
     }
 
     /**
@@ -394,11 +529,11 @@ public class MarkLogicClientImpl {
      * @param subject
      * @param predicate
      * @param object
-     * @param tx
+     * @param context
      * @param contexts
      * @throws MarkLogicRdf4jException
      */
-    public void performRemove(String baseURI, Resource subject, IRI predicate, Value object, Transaction tx, Resource... contexts) throws MarkLogicRdf4jException {
+    public void performRemove(String baseURI, Resource subject, IRI predicate, Value object, MarkLogicRequestContext context, Resource... contexts) throws MarkLogicRdf4jException {
         StringBuilder sb = new StringBuilder();
         String[] contextArgs = null;
         if(contexts.length>0)
@@ -420,108 +555,54 @@ public class MarkLogicClientImpl {
         if(Util.notNull(subject)) qdef.withBinding("s", subject.stringValue());
         if(Util.notNull(predicate)) qdef.withBinding("p", predicate.stringValue());
         if(Util.notNull(object)) bindObject(qdef, "o", object);
-        sparqlManager.executeUpdate(qdef, tx);
+        sparqlManager.executeUpdate(qdef, context.getTransaction());
     }
 
     /**
      * Clears triples from named graph.
      *
-     * @param tx
+     * @param context
      * @param contexts
      */
-    public void performClear(Transaction tx, Resource... contexts) {
+    public void performClear(MarkLogicRequestContext context, Resource... contexts) {
         if(contexts.length>0) {
             for (int i = 0; i < contexts.length; i++) {
                 if (Util.notNull(contexts[i])) {
-                    graphManager.delete(contexts[i].stringValue(), tx);
+                    graphManager.delete(contexts[i].stringValue(), context.getTransaction());
                 } else {
-                    graphManager.delete(DEFAULT_GRAPH_URI, tx);
+                    graphManager.delete(DEFAULT_GRAPH_URI, context.getTransaction());
                 }
             }
         }else{
-            graphManager.delete(DEFAULT_GRAPH_URI, tx);
+            graphManager.delete(DEFAULT_GRAPH_URI, context.getTransaction());
         }
     }
 
     /**
      * Clears all triples.
      *
-     * @param tx
-     */
-    public void performClearAll(Transaction tx) {
-        graphManager.deleteGraphs(tx);
-    }
-
-    public Integer getOptimizeLevel() {
-        return optimizeLevel;
-    }
-
-    public void setOptimizeLevel(Integer optimizeLevel) {
-        this.optimizeLevel = optimizeLevel;
-    }
-
-    /**
-     * getter rulesets
-     *
-     * @return
+     * @param context
      */
-    public SPARQLRuleset[] getRulesets() {
-        return this.ruleset;
+    public void performClearAll(MarkLogicRequestContext context) {
+        graphManager.deleteGraphs(context.getTransaction());
     }
 
     /**
-     * setter for rulesets, filters out nulls
+     * getter for load balancer
      *
-     * @param rulesets
+     * @return MarkLogicLoadBalancer
      */
-    public void setRulesets(SPARQLRuleset ... rulesets) {
-        if(Util.notNull(rulesets)) {
-            List<SPARQLRuleset> list = new ArrayList<>();
-            for(Object r : rulesets) {
-                if(r != null && rulesets.length > 0) {
-                    list.add((SPARQLRuleset)r);
-                }
-            }
-            this.ruleset = list.toArray(new SPARQLRuleset[list.size()]);
-        }else{
-            this.ruleset = null;
-        }
+    public MarkLogicLoadBalancer getLoadBalancer() {
+        return loadBalancer;
     }
 
     /**
-     * setter for graph permissions
+     * setter for load balancer spreading reads outside of transactions over cluster hosts, null for none
      *
-     * @param graphPerms
-     */
-    public void setGraphPerms(GraphPermissions graphPerms) {
-        this.graphPerms = graphPerms;
-    }
-
-    /**
-     * getter for graph permissions
-     *
-     * @return
-     */
-    public GraphPermissions getGraphPerms() {
-        return this.graphPerms;
-    }
-
-    /**
-     * setter for ConstrainingQueryDefinition
-     *
-     * @param constrainingQueryDefinition
-     */
-    public void setConstrainingQueryDefinition(QueryDefinition constrainingQueryDefinition) {
-        this.constrainingQueryDef = constrainingQueryDefinition;
-    }
-
-    /**
-     * getter for ConstrainingQueryDefinition
-     *
-     * @return
+     * @param loadBalancer
      */
-    public QueryDefinition getConstrainingQueryDefinition() {
-        return this.constrainingQueryDef;
+    public void setLoadBalancer(MarkLogicLoadBalancer loadBalancer) {
+        this.loadBalancer = loadBalancer;
     }
 
     /**
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.Transaction;
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.semantics.GraphPermissions;
+import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.utils.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connection scoped state applied to every request sent through
+ * MarkLogicClientImpl: open transaction, rulesets, graph permissions,
+ * constraining query and optimize level.
+ *
+ * Each MarkLogicClient owns one, so connections sharing a MarkLogicClientImpl
+ * can run their own transactions and settings in parallel.
+ *
+ *
+ */
+public class MarkLogicRequestContext {
+
+    private volatile Transaction transaction;
+    private volatile SPARQLRuleset[] rulesets;
+    private volatile GraphPermissions graphPerms;
+    private volatile QueryDefinition constrainingQueryDef;
+    private volatile Integer optimizeLevel;
+
+    // incremented whenever a setting applied by query templates changes
+    private volatile long settingsVersion;
+
+    /**
+     * getter for transaction, null outside of a transaction
+     *
+     * @return Transaction
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * setter for transaction
+     *
+     * @param transaction
+     */
+    public void setTransaction(Transaction transaction) {
+        this.transaction = transaction;
+    }
+
+    /**
+     * getter rulesets
+     *
+     * @return SPARQLRuleset[]
+     */
+    public SPARQLRuleset[] getRulesets() {
+        return rulesets;
+    }
+
+    /**
+     * setter for rulesets, filters out nulls
+     *
+     * @param rulesets
+     */
+    public synchronized void setRulesets(SPARQLRuleset... rulesets) {
+        if (Util.notNull(rulesets)) {
+            List<SPARQLRuleset> list = new ArrayList<>();
+            for (SPARQLRuleset r : rulesets) {
+                if (r != null) {
+                    list.add(r);
+                }
+            }
+            this.rulesets = list.toArray(new SPARQLRuleset[list.size()]);
+        } else {
+            this.rulesets = null;
+        }
+        settingsVersion++;
+    }
+
+    /**
+     * getter for graph permissions
+     *
+     * @return GraphPermissions
+     */
+    public GraphPermissions getGraphPerms() {
+        return graphPerms;
+    }
+
+    /**
+     * setter for graph permissions
+     *
+     * @param graphPerms
+     */
+    public synchronized void setGraphPerms(GraphPermissions graphPerms) {
+        this.graphPerms = graphPerms;
+        settingsVersion++;
+    }
+
+    /**
+     * getter for ConstrainingQueryDefinition
+     *
+     * @return QueryDefinition
+     */
+    public QueryDefinition getConstrainingQueryDefinition() {
+        return constrainingQueryDef;
+    }
+
+    /**
+     * setter for ConstrainingQueryDefinition
+     *
+     * @param constrainingQueryDefinition
+     */
+    public synchronized void setConstrainingQueryDefinition(QueryDefinition constrainingQueryDefinition) {
+        this.constrainingQueryDef = constrainingQueryDefinition;
+        settingsVersion++;
+    }
+
+    /**
+     * getter for optimize level
+     *
+     * @return Integer
+     */
+    public Integer getOptimizeLevel() {
+        return optimizeLevel;
+    }
+
+    /**
+     * setter for optimize level
+     *
+     * @param optimizeLevel
+     */
+    public synchronized void setOptimizeLevel(Integer optimizeLevel) {
+        this.optimizeLevel = optimizeLevel;
+        settingsVersion++;
+    }
+
+    /**
+     * Returns a counter which changes whenever rulesets, graph permissions,
+     * constraining query or optimize level are set, so query templates built
+     * from earlier settings can be detected.
+     *
+     * @return long
+     */
+    public long getSettingsVersion() {
+        return settingsVersion;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts bytes read from a response body and the time spent blocked reading them.
+ *
+ *
+ */
+class MeteredInputStream extends CountingInputStream {
+
+    private long readStart;
+
+    private volatile long readNanos;
+
+    MeteredInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Returns nanoseconds spent in reads so far.
+     *
+     * @return long
+     */
+    long getReadNanos() {
+        return readNanos;
+    }
+
+    @Override
+    protected void beforeRead(int n) throws IOException {
+        readStart = System.nanoTime();
+    }
+
+    @Override
+    protected synchronized void afterRead(int n) {
+        readNanos += System.nanoTime() - readStart;
+        super.afterRead(n);
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only batch of quads grouped by context as they are added, written
+ * out as an INSERT DATA or DELETE DATA update in a single pass.
+ *
+ * Terms are dictionary encoded: each distinct value is held once, found
+ * through an open addressing table of ints, and triples are int columns of
+ * term ids. Equal terms added as separate objects, typically the subject,
+ * predicate and type of each statement, are retained once rather than once
+ * per use. A distinct term costs about 20 bytes of bookkeeping besides the
+ * value itself, so batches of unique literals gain nothing. The update is
+ * written straight from the dictionary.
+ *
+ * Duplicates are kept; repeating a quad in a data update is harmless.
+ * Not thread safe, callers synchronize.
+ */
+class QuadBatch {
+
+    // per quad: angle brackets, spaces and dot around the terms
+    private static final int QUAD_OVERHEAD = 12;
+
+    // per graph: " GRAPH <> { " and " }"
+    private static final int GRAPH_OVERHEAD = 14;
+
+    private static final int INITIAL_TERMS = 64;
+
+    // dictionaries grown past this are dropped by clear rather than kept for reuse
+    private static final int MAX_RETAINED_TERMS = 1 << 16;
+
+    // null key is the default graph
+    private final Map<Resource, Group> groups = new LinkedHashMap<>();
+
+    // term dictionary: value and estimated written length by id, and an
+    // open addressing table of id + 1 by value hash, 0 marking a free slot
+    private Value[] terms = new Value[INITIAL_TERMS];
+
+    private int[] lengths = new int[INITIAL_TERMS];
+
+    private int[] index = new int[INITIAL_TERMS * 2];
+
+    private int termCount;
+
+    private int size;
+
+    private long estimatedLength;
+
+    /**
+     * Adds a triple to each of contexts, or to the default graph when none are given.
+     */
+    void add(Resource subject, IRI predicate, Value object, Resource... contexts) {
+        if (contexts == null || contexts.length == 0) {
+            group(null).add(subject, predicate, object);
+            return;
+        }
+        for (Resource context : contexts) {
+            group(context).add(subject, predicate, object);
+        }
+    }
+
+    /**
+     * Adds a statement to its context.
+     */
+    void add(Statement st) {
+        group(st.getContext()).add(st.getSubject(), st.getPredicate(), st.getObject());
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns contexts holding quads, null standing for the default graph.
+     *
+     * @return Set
+     */
+    Set<Resource> contexts() {
+        return groups.keySet();
+    }
+
+    /**
+     * Returns an upper estimate of the length in UTF-8 bytes of the update
+     * written by writeTo.
+     *
+     * @return long
+     */
+    long estimatedLength() {
+        return estimatedLength;
+    }
+
+    /**
+     * Returns an upper estimate of the length added to the update by a triple
+     * in each of contexts, or in the default graph when none are given.
+     *
+     * @return long
+     */
+    static long estimatedLength(Resource subject, IRI predicate, Value object, Resource... contexts) {
+        long quad = QUAD_OVERHEAD + length(subject) + length(predicate) + length(object);
+        return contexts == null || contexts.length == 0 ? quad : quad * contexts.length;
+    }
+
+    /**
+     * Returns an upper estimate of the length added to the update by st.
+     *
+     * @return long
+     */
+    static long estimatedLength(Statement st) {
+        return QUAD_OVERHEAD + length(st.getSubject()) + length(st.getPredicate()) + length(st.getObject());
+    }
+
+    /**
+     * Returns the number of distinct terms held by the dictionary.
+     *
+     * @return int
+     */
+    int termCount() {
+        return termCount;
+    }
+
+    void clear() {
+        groups.clear();
+        if (terms.length > MAX_RETAINED_TERMS) {
+            terms = new Value[INITIAL_TERMS];
+            lengths = new int[INITIAL_TERMS];
+            index = new int[INITIAL_TERMS * 2];
+        } else {
+            Arrays.fill(terms, 0, termCount, null);
+            Arrays.fill(index, 0);
+        }
+        termCount = 0;
+        size = 0;
+        estimatedLength = 0;
+    }
+
+    /**
+     * Appends the batch as a data update.
+     *
+     * @param operation INSERT DATA or DELETE DATA
+     * @param sb
+     */
+    void writeTo(String operation, StringBuilder sb) {
+        sb.append(operation).append(" { ");
+        for (Map.Entry<Resource, Group> entry : groups.entrySet()) {
+            Resource context = entry.getKey();
+            if (context != null) {
+                sb.append(" GRAPH <").append(context.stringValue()).append("> { ");
+            }
+            Group group = entry.getValue();
+            for (int i = 0; i < group.length; i += 3) {
+                appendTriple(sb, group.triples, i);
+            }
+            if (context != null) {
+                sb.append(" }");
+            }
+        }
+        sb.append("} ");
+    }
+
+    /**
+     * Writes the batch as up to parts data updates of similar estimated
+     * length, each a complete update which can be sent independently. Parts
+     * are cut by length alone; a graph spanning parts is opened in each.
+     *
+     * @param operation INSERT DATA or DELETE DATA
+     * @param parts
+     * @return List of updates
+     */
+    List<String> writeParts(String operation, int parts) {
+        long target = estimatedLength / parts + 1;
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 16, target + target / 4 + 16);
+        List<String> updates = new ArrayList<>(parts);
+        StringBuilder sb = null;
+        long length = 0;
+        for (Map.Entry<Resource, Group> entry : groups.entrySet()) {
+            Resource context = entry.getKey();
+            Group group = entry.getValue();
+            boolean open = false;
+            for (int i = 0; i < group.length; i += 3) {
+                if (sb == null) {
+                    sb = new StringBuilder(capacity).append(operation).append(" { ");
+                    length = 0;
+                }
+                if (!open && context != null) {
+                    sb.append(" GRAPH <").append(context.stringValue()).append("> { ");
+                    open = true;
+                }
+                appendTriple(sb, group.triples, i);
+                length += QUAD_OVERHEAD + lengths[group.triples[i]] + lengths[group.triples[i + 1]] + lengths[group.triples[i + 2]];
+                if (length >= target && updates.size() < parts - 1) {
+                    if (open) {
+                        sb.append(" }");
+                        open = false;
+                    }
+                    updates.add(sb.append("} ").toString());
+                    sb = null;
+                }
+            }
+            if (open) {
+                sb.append(" }");
+            }
+        }
+        if (sb != null) {
+            updates.add(sb.append("} ").toString());
+        }
+        return updates;
+    }
+
+    private void appendTriple(StringBuilder sb, int[] triples, int i) {
+        sb.append('<').append(terms[triples[i]].stringValue()).append("> ");
+        sb.append('<').append(terms[triples[i + 1]].stringValue()).append("> ");
+        appendObject(sb, terms[triples[i + 2]]);
+        sb.append('.');
+    }
+
+    private Group group(Resource context) {
+        Group group = groups.get(context);
+        if (group == null) {
+            group = new Group();
+            groups.put(context, group);
+            if (context != null) {
+                estimatedLength += GRAPH_OVERHEAD + utf8Length(context.stringValue());
+            }
+        }
+        return group;
+    }
+
+    private int id(Value value) {
+        int mask = index.length - 1;
+        int slot = hash(value) & mask;
+        for (int entry = index[slot]; entry != 0; entry = index[slot]) {
+            if (terms[entry - 1].equals(value)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (termCount == terms.length) {
+            terms = Arrays.copyOf(terms, termCount * 2);
+            lengths = Arrays.copyOf(lengths, termCount * 2);
+        }
+        int id = termCount++;
+        terms[id] = value;
+        lengths[id] = length(value);
+        index[slot] = id + 1;
+        // keeps the table at most half full, so probe sequences stay short
+        if (termCount * 2 > index.length) {
+            rehash(index.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < termCount; id++) {
+            int slot = hash(terms[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+        index = table;
+    }
+
+    // spreads high bits down, as value hashes are often string hashes
+    private static int hash(Value value) {
+        int h = value.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static void appendObject(StringBuilder sb, Value object) {
+        if (object instanceof Literal) {
+            Literal lit = (Literal) object;
+            sb.append('"');
+            appendEscaped(sb, lit.getLabel());
+            sb.append('"');
+            String language = lit.getLanguage().orElse(null);
+            if (language == null) {
+                sb.append("^^<").append(lit.getDatatype().stringValue()).append('>');
+            } else {
+                sb.append('@').append(language);
+            }
+        } else {
+            sb.append('<').append(object.stringValue()).append("> ");
+        }
+    }
+
+    // escapes as SPARQLUtil.encodeString, without its intermediate strings
+    private static void appendEscaped(StringBuilder sb, String label) {
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\b': sb.append("\\b"); break;
+                case '\f': sb.append("\\f"); break;
+                case '"': sb.append("\\\""); break;
+                case '\'': sb.append("\\'"); break;
+                default: sb.append(c);
+            }
+        }
+    }
+
+    // estimated UTF-8 bytes written for value
+    private static int length(Value value) {
+        if (value instanceof Literal) {
+            Literal lit = (Literal) value;
+            String label = lit.getLabel();
+            // escaping adds at most a byte per char; datatype or language follows
+            return utf8Length(label) + label.length() + utf8Length(lit.getDatatype().stringValue()) + 4;
+        }
+        return utf8Length(value.stringValue());
+    }
+
+    /**
+     * Returns the length of s encoded as UTF-8, without encoding it.
+     *
+     * @return int
+     */
+    static int utf8Length(String s) {
+        int bytes = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                // a surrogate pair's two chars encode as 4 bytes together
+                bytes += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    private class Group {
+
+        // subject, predicate and object ids per triple
+        private int[] triples = new int[48];
+
+        private int length;
+
+        void add(Resource subject, IRI predicate, Value object) {
+            if (length + 3 > triples.length) {
+                triples = Arrays.copyOf(triples, triples.length * 2);
+            }
+            int s = id(subject);
+            int p = id(predicate);
+            int o = id(object);
+            triples[length++] = s;
+            triples[length++] = p;
+            triples[length++] = o;
+            size++;
+            estimatedLength += QUAD_OVERHEAD + lengths[s] + lengths[p] + lengths[o];
+        }
+    }
+}
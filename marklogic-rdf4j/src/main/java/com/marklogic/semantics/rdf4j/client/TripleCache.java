@@ -15,13 +15,14 @@
  */
 /**
  * A timer that flushes a cache of triple add statements
- * periodically. The cache is represented as a Model.
+ * periodically. The cache is represented as a dictionary encoded QuadBatch.
  */
 package com.marklogic.semantics.rdf4j.client;
 
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.MarkLogicWriteCacheTuner;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import org.eclipse.rdf4j.model.*;
-import org.eclipse.rdf4j.model.impl.LinkedHashModel;
 import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.UpdateExecutionException;
 import org.eclipse.rdf4j.repository.RepositoryException;
@@ -30,23 +31,66 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Timer implements write cache for efficient adding of triples.
+ * Write cache for efficient adding of triples.
+ *
+ * Caches of all clients share one scheduler for their flush deadlines. A
+ * deadline cacheMillis away is armed when a cache goes from empty to holding
+ * statements and disarmed when it is flushed, so idle caches cost nothing.
+ * A passed deadline hands the flush to a shared, bounded pool rather than
+ * running it on the scheduler, so a slow or retrying flush cannot hold back
+ * the deadlines of other caches.
  *
  *
  */
-public abstract class TripleCache extends TimerTask {
+public abstract class TripleCache implements Runnable {
 
     private static final Logger log = LoggerFactory.getLogger(TripleCache.class);
 
-    protected Model cache;
+    // flush deadlines of all caches, never runs a flush itself
+    private static final ScheduledThreadPoolExecutor scheduler = newScheduler();
+
+    // flushes run at once by all caches unless a higher flush parallelism is set
+    private static final int FLUSH_THREADS = 4;
+
+    // flushes of all caches, queued while every thread is flushing
+    private static final ThreadPoolExecutor flusher = newFlusher();
+
     protected MarkLogicClient client;
 
+    // grouped by context as added, guarded by this
+    private final QuadBatch cache = new QuadBatch();
+
+    // reused across flushes, dropped after unusually large ones
+    private StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+
     public static final long DEFAULT_CACHE_SIZE = 750;
 
+    public static final long DEFAULT_CACHE_BYTES = 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    // smallest estimated update length worth sending as a parallel part
+    private static final long MIN_PART_LENGTH = 64 * 1024;
+
+    private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
+
     public static final long DEFAULT_CACHE_MILLIS = 800;
     public static final long DEFAULT_INITIAL_DELAY = 50;
 
@@ -56,8 +100,24 @@ public abstract class TripleCache extends TimerTask {
 
     protected long cacheMillis;
 
+    protected long cacheBytes = DEFAULT_CACHE_BYTES;
+
     protected Date lastCacheAccess = new Date();
 
+    // null unless journaling is enabled
+    private TripleJournal journal;
+
+    // null while the cache is empty
+    private ScheduledFuture<?> deadline;
+
+    private boolean cancelled;
+
+    // null unless batch size and interval are tuned
+    private MarkLogicWriteCacheTuner tuner;
+
+    // length in UTF-8 bytes of the last flushed update
+    private long payloadLength;
+
     /**
      * Creates a new TripleCache object, using the supplied MarkLogicClient.
      *
@@ -66,7 +126,6 @@ public abstract class TripleCache extends TimerTask {
     public TripleCache(MarkLogicClient client) {
         super();
         this.client = client;
-        this.cache = new LinkedHashModel();
         this.cacheSize = DEFAULT_CACHE_SIZE;
         this.cacheMillis = DEFAULT_CACHE_MILLIS;
     }
@@ -74,7 +133,7 @@ public abstract class TripleCache extends TimerTask {
     public TripleCache(MarkLogicClient client, long cacheSize) {
         super();
         this.client = client;
-        this.cache = new LinkedHashModel();
+        this.cacheMillis = DEFAULT_CACHE_MILLIS;
         setCacheSize(cacheSize);
     }
 
@@ -96,6 +155,25 @@ public abstract class TripleCache extends TimerTask {
         this.cacheSize = cacheSize;
     }
 
+    /**
+     * getter cacheBytes
+     *
+     * @return long
+     */
+    public long getCacheBytes() {
+        return cacheBytes;
+    }
+
+    /**
+     * setter cacheBytes, the estimated update size in bytes at which the
+     * cache flushes; adds which would take the cache past it flush it first
+     *
+     * @param cacheBytes
+     */
+    public void setCacheBytes(long cacheBytes) {
+        this.cacheBytes = cacheBytes;
+    }
+
     /**
      * getter cacheMillis
      *
@@ -115,33 +193,264 @@ public abstract class TripleCache extends TimerTask {
     }
 
     /**
-     * Tests to see if we should flush cache.
+     * Journals adds before caching them, so they can be replayed if the JVM
+     * dies before they are flushed. Statements already cached, and adds made
+     * inside a transaction, are not journaled.
+     *
+     * @param journal null to stop journaling
+     */
+    public synchronized void setJournal(TripleJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * getter for journal
+     *
+     * @return TripleJournal
+     */
+    public synchronized TripleJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Lets tuner adjust cache size and cache millis after each flush,
+     * starting from the current values within its bounds.
+     *
+     * @param tuner null to keep the current values
+     */
+    public synchronized void setTuner(MarkLogicWriteCacheTuner tuner) {
+        this.tuner = tuner;
+        if (tuner != null) {
+            this.cacheSize = tuner.clampCacheSize(cacheSize);
+            this.cacheMillis = tuner.clampCacheMillis(cacheMillis > 0 ? cacheMillis : DEFAULT_CACHE_MILLIS);
+        }
+    }
+
+    /**
+     * Flushes the cache once its deadline passed, on the shared flush pool.
+     * A failed flush keeps the cached triples and arms a new deadline, rather
+     * than dropping them.
      *
      */
     @Override
     public synchronized void run(){
-        Date now = new Date();
-        if ( !cache.isEmpty() &&
-                ((cache.size() > cacheSize - 1) || (now.getTime() - lastCacheAccess.getTime() > cacheMillis))) {
+        disarm();
+        if (cancelled || cache.isEmpty()) {
+            return;
+        }
+        try {
+            timedFlush();
+        } catch (RuntimeException | IOException e) {
+            log.error("Could not flush cache of {} triples, will try again: {}", cache.size(), e.getLocalizedMessage());
+        }
+        arm();
+    }
+
+    /**
+     * Stops flushing the cache on its deadline; triples still cached are left
+     * to sync, or the journal.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        disarm();
+    }
+
+    /**
+     * Drops cached triples without sending them, along with their journal.
+     */
+    public synchronized void discard() {
+        log.debug("discarding cache of {} triples", cache.size());
+        cache.clear();
+        disarm();
+        if (journal != null) {
             try {
-                flush();
-            } catch (RepositoryException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
-            } catch (MalformedQueryException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
-            } catch (UpdateExecutionException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
+                journal.truncate();
+            } catch (IOException e) {
+                log.warn("Could not truncate write journal {}: {}", journal.getFile(), e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns true if any cached quad belongs to one of graphs.
+     *
+     * @param graphs graph uris, the default graph as MarkLogic's default graph uri
+     * @return boolean
+     */
+    public synchronized boolean touches(Set<String> graphs) {
+        for (Resource context : cache.contexts()) {
+            String graph = context != null ? context.stringValue() : DEFAULT_GRAPH_URI;
+            if (graphs.contains(graph)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if nothing is cached.
+     *
+     * @return boolean
+     */
+    public synchronized boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    /**
+     * Flushes the cache to the server as a single data update.
+     *
+     * @throws RepositoryException
+     * @throws MalformedQueryException
+     * @throws UpdateExecutionException
+     * @throws IOException
+     */
+    protected synchronized void flush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException {
+        if (cache.isEmpty()) { return; }
+        int parts = parts();
+        if (parts > 1) {
+            sendParts(cache.writeParts(updateKeyword(), parts));
+        } else {
+            String entireQuery = dataQuery();
+            payloadLength = QuadBatch.utf8Length(entireQuery);
+            log.debug(entireQuery);
+            client.sendDataUpdate(flushOperation(), entireQuery);
+        }
+        lastCacheAccess = new Date();
+        log.debug("success flushing cache: {}", cache.size());
+        cache.clear();
+        disarm();
+        if (journal != null) {
+            // the flush succeeded, a journal left behind only replays acknowledged adds
+            try {
+                journal.truncate();
             } catch (IOException e) {
-                log.error(e.getLocalizedMessage());
-                throw new RuntimeException(e);
+                log.warn("Could not truncate write journal {}: {}", journal.getFile(), e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes the cache as an update into the reused buffer, in one pass.
+     *
+     * @return String
+     */
+    private String dataQuery() {
+        long estimate = cache.estimatedLength() + 16;
+        if (estimate > buffer.capacity() && estimate < Integer.MAX_VALUE) {
+            buffer.ensureCapacity((int) estimate);
+        }
+        cache.writeTo(updateKeyword(), buffer);
+        String query = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+        } else {
+            buffer.setLength(0);
+        }
+        return query;
+    }
+
+    // parts to flush in parallel: 1 inside transactions, which take one request at a time, or for small caches
+    private int parts() {
+        int parallelism = client.getFlushParallelism();
+        if (parallelism < 2 || client.isActiveTransaction()) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(parallelism, cache.estimatedLength() / MIN_PART_LENGTH));
+    }
+
+    /**
+     * Sends independent updates concurrently on the client's async executor.
+     * The calling thread sends whichever parts no executor thread has picked
+     * up yet, so a busy executor cannot stall the flush. Fails with the first
+     * failure once all parts completed; the cache is then kept and flushed
+     * whole again, repeating data updates being harmless.
+     *
+     * @param updates
+     */
+    private void sendParts(List<String> updates) {
+        Operation operation = flushOperation();
+        List<AtomicBoolean> claims = new ArrayList<>(updates.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(updates.size());
+        for (String update : updates) {
+            payloadLength += QuadBatch.utf8Length(update);
+            AtomicBoolean claim = new AtomicBoolean();
+            claims.add(claim);
+            futures.add(client.executeAsync(() -> {
+                if (claim.compareAndSet(false, true)) {
+                    client.sendDataUpdate(operation, update);
+                }
+                return null;
+            }));
+        }
+        log.debug("flushing cache of {} triples in {} parts", cache.size(), updates.size());
+        RuntimeException failure = null;
+        // executor threads take parts from the front, so work from the back
+        for (int i = updates.size() - 1; i >= 0; i--) {
+            if (claims.get(i).compareAndSet(false, true)) {
+                try {
+                    client.sendDataUpdate(operation, updates.get(i));
+                } catch (RuntimeException e) {
+                    failure = failure != null ? failure : e;
+                }
+            }
+        }
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : new MarkLogicRdf4jException("Could not flush cache part.", e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns the update operation sent by flush, for metrics.
+     *
+     * @return Operation
+     */
+    protected Operation flushOperation() {
+        return Operation.INSERT_DATA;
+    }
+
+    /**
+     * Returns the SPARQL keyword of the update sent by flush.
+     *
+     * @return String
+     */
+    protected String updateKeyword() {
+        return "INSERT DATA";
+    }
+
+    private void timedFlush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException {
+        long statements = cache.size();
+        long start = System.nanoTime();
+        boolean failed = true;
+        payloadLength = 0;
+        try {
+            flush();
+            failed = false;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            client.getMetrics().cacheFlushed(flushOperation(), statements, nanos, failed);
+            if (tuner != null) {
+                tune(statements, nanos, failed);
             }
         }
     }
 
-    protected abstract void flush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException;
+    private void tune(long statements, long nanos, boolean failed) {
+        cacheSize = tuner.nextCacheSize(cacheSize, statements, nanos, payloadLength, failed);
+        cacheMillis = tuner.nextCacheMillis(cacheMillis, nanos, failed);
+        log.debug("tuned cache size to {}, interval to {}ms", cacheSize, cacheMillis);
+        client.getMetrics().writeCacheTuned(flushOperation(), cacheSize, cacheMillis);
+    }
 
     /**
      * Forces the cache to flush if there is anything in it.
@@ -152,7 +461,7 @@ public abstract class TripleCache extends TimerTask {
         log.debug(String.valueOf(cache.size()));
         if( !cache.isEmpty()) {
             try {
-                flush();
+                timedFlush();
             } catch (RepositoryException e) {
                 throw new MarkLogicRdf4jException("Could not flush write cache, encountered repository issue.",e);
             } catch (MalformedQueryException e) {
@@ -166,13 +475,100 @@ public abstract class TripleCache extends TimerTask {
     }
 
     /**
-     * Add triple to cache Model.
+     * Builds an INSERT DATA or DELETE DATA update for all statements of model.
+     *
+     * @param operation
+     * @param model
+     * @return String
+     */
+    protected static String dataQuery(String operation, Model model) {
+        QuadBatch batch = new QuadBatch();
+        for (Statement st : model) {
+            batch.add(st);
+        }
+        StringBuilder entireQuery = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 16, batch.estimatedLength()) + 16);
+        batch.writeTo(operation, entireQuery);
+        return entireQuery.toString();
+    }
+
+    /**
+     * Add triple to cache. Flushes first if the triple would take the cache
+     * past cacheBytes, so updates stay under it unless a single triple exceeds it.
      */
     public synchronized void add(Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
+        if (!cache.isEmpty() && cache.estimatedLength() + QuadBatch.estimatedLength(subject, predicate, object, contexts) > cacheBytes) {
+            forceRun();
+        }
+        // adds inside a transaction are lost with it, there is nothing to replay
+        if (journal != null && !client.isActiveTransaction()) {
+            journal.append(subject, predicate, object, contexts);
+        }
         cache.add(subject,predicate,object,contexts);
-        if( cache.size() > cacheSize - 1){
+        if (full()) {
             forceRun();
         }
+        arm();
+    }
+
+    // arms a flush deadline unless the cache is empty or one is armed
+    private void arm() {
+        if (deadline == null && !cancelled && !cache.isEmpty()) {
+            deadline = scheduler.schedule(() -> flusher.execute(this), cacheMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void disarm() {
+        if (deadline != null) {
+            deadline.cancel(false);
+            deadline = null;
+        }
+    }
+
+    /**
+     * Grows the shared flush pool to at least threads, never shrinking it.
+     *
+     * @param threads
+     */
+    static synchronized void ensureFlushThreads(int threads) {
+        if (threads > flusher.getMaximumPoolSize()) {
+            flusher.setMaximumPoolSize(threads);
+            flusher.setCorePoolSize(threads);
+        }
+    }
+
+    /**
+     * Returns the number of flushes the shared pool runs at once.
+     *
+     * @return int
+     */
+    static int getFlushThreads() {
+        return flusher.getMaximumPoolSize();
+    }
+
+    private static ScheduledThreadPoolExecutor newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "marklogic-cache-deadline");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static ThreadPoolExecutor newFlusher() {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor flusher = new ThreadPoolExecutor(FLUSH_THREADS, FLUSH_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "marklogic-cache-flush-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.allowCoreThreadTimeOut(true);
+        return flusher;
+    }
+
+    // whichever of statement count or estimated bytes is reached first
+    private boolean full() {
+        return cache.size() > cacheSize - 1 || cache.estimatedLength() >= cacheBytes;
     }
 
 }
\ No newline at end of file
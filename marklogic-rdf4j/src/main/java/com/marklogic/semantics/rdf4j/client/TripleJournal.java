@@ -0,0 +1,297 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.NTriplesParserSettings;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.NoSuchFileException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only N-Quads journal of statements added to a write cache, so adds
+ * waiting for the next flush survive the JVM dying.
+ *
+ * Each add is written to the file before it is cached, which survives the
+ * JVM dying; it is forced to disk shortly after, appends in between sharing
+ * one fsync. The write cache truncates the journal once a flush is
+ * acknowledged by the server. Journals left
+ * behind are replayed, and deleted, by replay when the repository is next
+ * initialized. Each journal is locked while open, so replay skips journals
+ * still written by other connections or processes sharing the directory.
+ *
+ *
+ */
+public class TripleJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(TripleJournal.class);
+
+    private static final String PREFIX = "marklogic-write-";
+
+    private static final String SUFFIX = ".nq";
+
+    private static final int REPLAY_BATCH_SIZE = 10000;
+
+    // appends within this window share one fsync
+    private static final long FORCE_DELAY_MILLIS = 100;
+
+    // forces of all journals, apart from cache flushes so slow flushes cannot delay them
+    private static final ScheduledExecutorService forcer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "marklogic-journal-force");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    private final StringBuilder line = new StringBuilder(256);
+
+    private boolean dirty;
+
+    /**
+     * Opens a new journal file in directory.
+     *
+     * @param directory
+     * @throws MarkLogicRdf4jException
+     */
+    public TripleJournal(File directory) throws MarkLogicRdf4jException {
+        this.file = new File(directory, PREFIX + UUID.randomUUID() + SUFFIX);
+        try {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            // released when the channel closes
+            channel.lock();
+        } catch (IOException e) {
+            throw new MarkLogicRdf4jException("Could not create write journal " + file + ".", e);
+        }
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return File
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Appends a triple for each of contexts, or for the default graph when none are given.
+     *
+     * @throws MarkLogicRdf4jException
+     */
+    synchronized void append(Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
+        line.setLength(0);
+        if (contexts == null || contexts.length == 0) {
+            appendQuad(subject, predicate, object, null);
+        } else {
+            for (Resource context : contexts) {
+                appendQuad(subject, predicate, object, context);
+            }
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(line.toString());
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new MarkLogicRdf4jException("Could not write to write journal " + file + ".", e);
+        }
+        if (!dirty) {
+            dirty = true;
+            forcer.schedule(this::forceQuietly, FORCE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Forces appended statements to disk, if any were appended since the last force.
+     *
+     * @throws IOException
+     */
+    synchronized void force() throws IOException {
+        if (dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+
+    private void forceQuietly() {
+        try {
+            force();
+        } catch (IOException e) {
+            log.error("Could not force write journal {} to disk: {}", file, e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Drops all journaled statements, once the server acknowledged them.
+     *
+     * @throws IOException
+     */
+    synchronized void truncate() throws IOException {
+        channel.truncate(0);
+        channel.force(false);
+        dirty = false;
+    }
+
+    /**
+     * Closes the journal, deleting it when nothing is left unacknowledged.
+     */
+    public synchronized void close() {
+        try {
+            force();
+            boolean empty = channel.size() == 0;
+            channel.close();
+            if (empty && !file.delete()) {
+                log.debug("could not delete {}", file);
+            }
+        } catch (IOException e) {
+            log.warn("Could not close write journal {}: {}", file, e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Ships statements of journals left in directory by a previous process
+     * as INSERT DATA updates, deleting each journal once shipped.
+     *
+     * @param client
+     * @param directory
+     * @return number of statements replayed
+     * @throws MarkLogicRdf4jException
+     */
+    public static long replay(MarkLogicClient client, File directory) throws MarkLogicRdf4jException {
+        File[] journals = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (journals == null) {
+            return 0;
+        }
+        long replayed = 0;
+        for (File journal : journals) {
+            replayed += replayUnlocked(client, journal);
+        }
+        return replayed;
+    }
+
+    // replays and empties journal unless its writer, or another replay, holds its lock
+    private static long replayUnlocked(MarkLogicClient client, File journal) throws MarkLogicRdf4jException {
+        long count;
+        try (FileChannel channel = FileChannel.open(journal.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                log.debug("skipping write journal {} in use", journal);
+                return 0;
+            }
+            count = replayFile(client, journal, channel);
+            // emptied under the lock, so a replay racing the delete finds nothing
+            channel.truncate(0);
+        } catch (NoSuchFileException e) {
+            // closed empty, or replayed, since listed
+            return 0;
+        } catch (IOException e) {
+            throw new MarkLogicRdf4jException("Could not open write journal " + journal + ".", e);
+        }
+        if (count > 0) {
+            log.info("replayed {} statements from write journal {}", count, journal);
+        }
+        if (!journal.delete() && journal.exists()) {
+            throw new MarkLogicRdf4jException("Could not delete replayed write journal " + journal + ".");
+        }
+        return count;
+    }
+
+    private static long replayFile(MarkLogicClient client, File journal, FileChannel channel) throws MarkLogicRdf4jException {
+        RDFParser parser = Rio.createParser(RDFFormat.NQUADS, SimpleValueFactory.getInstance());
+        parser.setPreserveBNodeIDs(true);
+        // a crash may leave the last line half written
+        parser.getParserConfig().set(NTriplesParserSettings.FAIL_ON_NTRIPLES_INVALID_LINES, false);
+        parser.getParserConfig().addNonFatalError(NTriplesParserSettings.FAIL_ON_NTRIPLES_INVALID_LINES);
+        Model chunk = new LinkedHashModel();
+        long[] count = new long[1];
+        parser.setRDFHandler(new AbstractRDFHandler() {
+            @Override
+            public void handleStatement(Statement st) throws RDFHandlerException {
+                chunk.add(st);
+                if (chunk.size() >= REPLAY_BATCH_SIZE) {
+                    count[0] += send(client, chunk);
+                }
+            }
+        });
+        // not closed, which would close the channel holding the lock
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+        try {
+            parser.parse(in, "");
+        } catch (IOException | RDFParseException | RDFHandlerException e) {
+            throw new MarkLogicRdf4jException("Could not read write journal " + journal + ".", e);
+        }
+        count[0] += send(client, chunk);
+        return count[0];
+    }
+
+    private static long send(MarkLogicClient client, Model chunk) throws MarkLogicRdf4jException {
+        long size = chunk.size();
+        if (size > 0) {
+            client.sendDataUpdate(Operation.INSERT_DATA, TripleCache.dataQuery("INSERT DATA", chunk));
+            chunk.clear();
+        }
+        return size;
+    }
+
+    private void appendQuad(Resource subject, IRI predicate, Value object, Resource context) {
+        line.append(NTriplesUtil.toNTriplesString(subject)).append(' ');
+        line.append(NTriplesUtil.toNTriplesString(predicate)).append(' ');
+        line.append(NTriplesUtil.toNTriplesString(object)).append(' ');
+        if (context != null) {
+            line.append(NTriplesUtil.toNTriplesString(context)).append(' ');
+        }
+        line.append(".\n");
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.semantics.GraphPermissions;
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffers adds and removes made inside a transaction, shipping them as a few
+ * large INSERT DATA / DELETE DATA requests on sync or just before commit,
+ * instead of timer driven flushes against the open transaction.
+ *
+ * Operations keep their order; consecutive adds (or removes) form one batch.
+ * Batches growing past the memory limit are spilled to a temporary N-Quads
+ * file, so buffer size is bounded by disk rather than heap. Spilled adds are
+ * uploaded as a single graph merge straight from the memory mapped file.
+ * Merges of quads cannot carry graph permissions, so with permissions set
+ * spilled adds are streamed back and shipped as INSERT DATA, like spilled
+ * removes are as DELETE DATA.
+ *
+ * A batch failing to ship leaves the transaction partially written, so the
+ * buffer becomes rollback-only: later operations, including the flush before
+ * commit, fail until the transaction is rolled back.
+ */
+public class TripleTransactionBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(TripleTransactionBuffer.class);
+
+    public static final long DEFAULT_MEMORY_LIMIT = 100000;
+
+    public static final long DEFAULT_BATCH_SIZE = 10000;
+
+    public static final long DEFAULT_BATCH_BYTES = 8 * 1024 * 1024;
+
+    private final MarkLogicClient client;
+
+    private final long memoryLimit;
+
+    private final long batchSize;
+
+    private final List<Batch> batches = new ArrayList<>();
+
+    private long inMemory;
+
+    // set once shipping failed, the transaction must be rolled back
+    private MarkLogicRdf4jException failure;
+
+    /**
+     * Creates a new TripleTransactionBuffer shipping through client.
+     *
+     * @param client
+     * @param memoryLimit statements held in memory before spilling to disk
+     * @param batchSize statements per update request, also split at DEFAULT_BATCH_BYTES
+     */
+    public TripleTransactionBuffer(MarkLogicClient client, long memoryLimit, long batchSize) {
+        this.client = client;
+        this.memoryLimit = memoryLimit;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Buffers triple add.
+     */
+    public synchronized void add(Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
+        checkNotFailed();
+        batch(true).add(subject, predicate, object, contexts);
+    }
+
+    /**
+     * Buffers removal of a fully specified triple.
+     */
+    public synchronized void remove(Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
+        checkNotFailed();
+        batch(false).add(subject, predicate, object, contexts);
+    }
+
+    /**
+     * Ships all buffered operations, in order, to the server. On failure the
+     * remaining operations are dropped and the buffer becomes rollback-only.
+     *
+     * @throws MarkLogicRdf4jException
+     */
+    public synchronized void flush() throws MarkLogicRdf4jException {
+        checkNotFailed();
+        try {
+            for (Batch batch : batches) {
+                batch.ship();
+            }
+        } catch (MarkLogicRdf4jException e) {
+            failure = e;
+            throw e;
+        } catch (RuntimeException e) {
+            failure = new MarkLogicRdf4jException(e);
+            throw e;
+        } finally {
+            discard();
+        }
+    }
+
+    /**
+     * Returns true once shipping failed and the transaction can only be rolled back.
+     *
+     * @return boolean
+     */
+    public synchronized boolean isRollbackOnly() {
+        return failure != null;
+    }
+
+    private void checkNotFailed() throws MarkLogicRdf4jException {
+        if (failure != null) {
+            throw new MarkLogicRdf4jException("Transaction buffer failed to ship, the transaction must be rolled back.", failure);
+        }
+    }
+
+    /**
+     * Drops all buffered operations without shipping them.
+     */
+    public synchronized void discard() {
+        for (Batch batch : batches) {
+            batch.delete();
+        }
+        batches.clear();
+        inMemory = 0;
+    }
+
+    private Batch batch(boolean insert) throws MarkLogicRdf4jException {
+        Batch last = batches.isEmpty() ? null : batches.get(batches.size() - 1);
+        if (last == null || last.insert != insert) {
+            last = new Batch(insert);
+            batches.add(last);
+        }
+        if (inMemory >= memoryLimit) {
+            for (Batch batch : batches) {
+                batch.spill();
+            }
+            inMemory = 0;
+        }
+        return last;
+    }
+
+    private class Batch {
+
+        private final boolean insert;
+
+        private final Model model = new LinkedHashModel();
+
+        private File spill;
+
+        private long spilled;
+
+        // estimated update length of the chunk being filled
+        private long chunkLength;
+
+        Batch(boolean insert) {
+            this.insert = insert;
+        }
+
+        void add(Resource subject, IRI predicate, Value object, Resource... contexts) {
+            int before = model.size();
+            model.add(subject, predicate, object, contexts);
+            inMemory += model.size() - before;
+        }
+
+        void spill() throws MarkLogicRdf4jException {
+            if (model.isEmpty()) {
+                return;
+            }
+            try {
+                if (spill == null) {
+                    spill = File.createTempFile("marklogic-tx-", ".nq");
+                    spill.deleteOnExit();
+                }
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(spill, true))) {
+                    Rio.write(model, out, RDFFormat.NQUADS);
+                }
+                log.debug("spilled {} statements to {}", model.size(), spill);
+                spilled += model.size();
+                model.clear();
+            } catch (IOException | RDFHandlerException e) {
+                throw new MarkLogicRdf4jException("Could not spill transaction buffer to disk.", e);
+            }
+        }
+
+        void ship() throws MarkLogicRdf4jException {
+            if (spill != null && insert && !hasGraphPerms()) {
+                upload();
+            } else if (spill != null) {
+                RDFParser parser = Rio.createParser(RDFFormat.NQUADS, client.getValueFactory());
+                parser.setPreserveBNodeIDs(true);
+                Model chunk = new LinkedHashModel();
+                parser.setRDFHandler(new AbstractRDFHandler() {
+                    @Override
+                    public void handleStatement(Statement st) throws RDFHandlerException {
+                        offer(chunk, st);
+                    }
+                });
+                try (InputStream in = new BufferedInputStream(new FileInputStream(spill))) {
+                    parser.parse(in, "");
+                } catch (IOException | RDFParseException | RDFHandlerException e) {
+                    throw new MarkLogicRdf4jException("Could not read spilled transaction buffer.", e);
+                }
+                send(chunk);
+            }
+            Model chunk = new LinkedHashModel();
+            for (Statement st : model) {
+                offer(chunk, st);
+            }
+            send(chunk);
+        }
+
+        private boolean hasGraphPerms() {
+            GraphPermissions graphPerms = client.getGraphPerms();
+            return graphPerms != null && !graphPerms.isEmpty();
+        }
+
+        // merges the spill file's quads in one request, without parsing them back
+        private void upload() throws MarkLogicRdf4jException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try (InputStream in = new MappedFileInputStream(spill)) {
+                client.sendQuads(in);
+                failed = false;
+            } catch (IOException e) {
+                throw new MarkLogicRdf4jException("Could not read spilled transaction buffer.", e);
+            } finally {
+                client.getMetrics().cacheFlushed(Operation.INSERT_DATA, spilled, System.nanoTime() - start, failed);
+            }
+        }
+
+        // adds st to chunk, sending chunk first if st would take it past the byte limit
+        // and after if it reached the batch size
+        private void offer(Model chunk, Statement st) throws MarkLogicRdf4jException {
+            long length = QuadBatch.estimatedLength(st);
+            if (chunkLength + length > DEFAULT_BATCH_BYTES) {
+                send(chunk);
+            }
+            chunk.add(st);
+            chunkLength += length;
+            if (chunk.size() >= batchSize) {
+                send(chunk);
+            }
+        }
+
+        private void send(Model chunk) throws MarkLogicRdf4jException {
+            chunkLength = 0;
+            if (chunk.isEmpty()) {
+                return;
+            }
+            Operation operation = insert ? Operation.INSERT_DATA : Operation.DELETE_DATA;
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                client.sendDataUpdate(operation, TripleCache.dataQuery(insert ? "INSERT DATA" : "DELETE DATA", chunk));
+                failed = false;
+            } finally {
+                client.getMetrics().cacheFlushed(operation, chunk.size(), System.nanoTime() - start, failed);
+            }
+            chunk.clear();
+        }
+
+        void delete() {
+            model.clear();
+            if (spill != null && !spill.delete()) {
+                log.debug("could not delete {}", spill);
+            }
+        }
+    }
+}
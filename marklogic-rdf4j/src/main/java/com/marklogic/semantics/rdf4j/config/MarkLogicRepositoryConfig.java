@@ -45,6 +45,9 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
     public static final IRI UPDATE_ENDPOINT = vf.createIRI(
             "http://www.marklogic.com/v1/graphs");
 
+    public static final IRI MAX_EXECUTION_TIME = vf.createIRI(
+            "http://www.marklogic.com/v1/graphs/sparql#maxExecutionTime");
+
 	private String queryEndpointUrl;
 	private String updateEndpointUrl;
 
@@ -54,6 +57,8 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 	private String password;
 	private String auth;
 
+	private int maxExecutionTime;
+
     /**
 	 * Base constructor
 	 */
@@ -173,6 +178,18 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 	public void setUpdateEndpointUrl(String url) {
 		this.updateEndpointUrl = url;
 	}
+
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for default max execution time
+	 * of queries, in seconds (0 means no limit)
+	 *
+	 */
+	public int getMaxExecutionTime() {
+		return maxExecutionTime;
+	}
+	public void setMaxExecutionTime(int maxExecutionTime) {
+		this.maxExecutionTime = maxExecutionTime;
+	}
 	
 	@Override
 	/**
@@ -201,6 +218,9 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 		if (getUpdateEndpointUrl() != null) {
 			model.add(implNode, UPDATE_ENDPOINT, vf.createIRI(getUpdateEndpointUrl()));
 		}
+		if (getMaxExecutionTime() > 0) {
+			model.add(implNode, MAX_EXECUTION_TIME, vf.createLiteral(getMaxExecutionTime()));
+		}
 
 		return implNode;
 	}
@@ -223,7 +243,11 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 			if (iri != null) {
 				setUpdateEndpointUrl(iri.stringValue());
 			}
-		} catch (RDF4JException e) {
+			Literal maxExecutionTime = Models.getPropertyLiteral(model, implNode, MAX_EXECUTION_TIME).orElse(null);
+			if (maxExecutionTime != null) {
+				setMaxExecutionTime(maxExecutionTime.intValue());
+			}
+		} catch (RDF4JException | NumberFormatException e) {
 			throw new RepositoryConfigException(e.getMessage(), e);
 		}
 	}
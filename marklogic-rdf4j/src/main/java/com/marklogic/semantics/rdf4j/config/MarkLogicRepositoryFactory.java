@@ -20,6 +20,7 @@
 package com.marklogic.semantics.rdf4j.config;
 
 import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.utils.Util;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.config.RepositoryConfigException;
 import org.eclipse.rdf4j.repository.config.RepositoryFactory;
@@ -69,18 +70,50 @@ public class MarkLogicRepositoryFactory implements RepositoryFactory {
         MarkLogicRepositoryConfig cfg = (MarkLogicRepositoryConfig) config;
         if (cfg.getHost() != null && cfg.getPort() != 0) {
             // init with MarkLogicRepositoryConfig
+            checkSingleServer(cfg);
             repo = new MarkLogicRepository(cfg.getHost(),cfg.getPort(),cfg.getUser(),cfg.getPassword(),cfg.getAuth());
         } else if (cfg.getHost() == null) {
             // init with queryEndpoint as connection string
             try {
-                repo = new MarkLogicRepository(new URL(cfg.getQueryEndpointUrl()));
-            } catch (MalformedURLException e) {
+                if (cfg.getUpdateEndpointUrl() != null) {
+                    // reads to the query endpoint, transactions and writes to the update endpoint
+                    repo = new MarkLogicRepository(new URL(cfg.getQueryEndpointUrl()), new URL(cfg.getUpdateEndpointUrl()));
+                } else {
+                    repo = new MarkLogicRepository(new URL(cfg.getQueryEndpointUrl()));
+                }
+            } catch (MalformedURLException | IllegalArgumentException e) {
                 logger.debug(e.getMessage());
                 throw new RepositoryConfigException(e.getMessage());
             }
         }else{
             throw new RepositoryConfigException("Invalid configuration class: " + config.getClass());
         }
+        repo.setDefaultMaxExecutionTime(cfg.getMaxExecutionTime());
         return repo;
     }
+
+    /**
+     * Host and port configs talk to a single server, so an update endpoint may
+     * only name that server. Separate read and write endpoints need a config
+     * made from endpoint URLs.
+     *
+     * @param cfg
+     * @throws RepositoryConfigException
+     */
+    private static void checkSingleServer(MarkLogicRepositoryConfig cfg) throws RepositoryConfigException {
+        if (cfg.getUpdateEndpointUrl() == null) {
+            return;
+        }
+        try {
+            URL updateEndpoint = new URL(cfg.getUpdateEndpointUrl());
+            int port = updateEndpoint.getPort() != -1 ? updateEndpoint.getPort() : updateEndpoint.getDefaultPort();
+            if (!Util.sameHost(updateEndpoint.getHost(), cfg.getHost()) || port != cfg.getPort()) {
+                throw new RepositoryConfigException("Update endpoint " + updateEndpoint.getHost() + ":" + updateEndpoint.getPort()
+                        + " differs from host and port; configure separate read and write endpoints with endpoint URLs only.");
+            }
+        } catch (MalformedURLException e) {
+            logger.debug(e.getMessage());
+            throw new RepositoryConfigException(e.getMessage());
+        }
+    }
 }
\ No newline at end of file
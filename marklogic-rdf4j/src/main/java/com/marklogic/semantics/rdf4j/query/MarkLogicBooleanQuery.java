@@ -23,6 +23,8 @@ import com.marklogic.client.FailedRequestException;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.MarkLogicQueryTrace;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
 import org.eclipse.rdf4j.query.BooleanQuery;
 import org.eclipse.rdf4j.query.MalformedQueryException;
@@ -32,7 +34,7 @@ import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * boolean query
@@ -64,17 +66,24 @@ public class MarkLogicBooleanQuery extends MarkLogicQuery implements BooleanQuer
     @Override
     public boolean evaluate() throws QueryEvaluationException {
         try {
-            sync();
-            return getMarkLogicClient().sendBooleanQuery(getQueryString(), getBindings(), getIncludeInferred(),getBaseURI());
+            syncForRead();
+            MarkLogicQueryTrace trace = getMarkLogicClient().newTrace(Operation.ASK);
+            return getMarkLogicClient().sendBooleanQuery(getQueryDefinition(), getMaxExecutionTime(), trace);
         }catch (RepositoryException e) {
             throw new QueryEvaluationException(e.getMessage(), e);
         }catch (MalformedQueryException e) {
             throw new QueryEvaluationException(e.getMessage(), e);
-        }catch (IOException e) {
-            throw new QueryEvaluationException(e.getMessage(), e);
         }catch(FailedRequestException e){
             throw new QueryEvaluationException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Evaluate boolean query without blocking the caller, on the repository's async executor.
+     *
+     * @return CompletableFuture
+     */
+    public CompletableFuture<Boolean> evaluateAsync() {
+        return getMarkLogicClient().executeAsync(this::evaluate);
+    }
 }
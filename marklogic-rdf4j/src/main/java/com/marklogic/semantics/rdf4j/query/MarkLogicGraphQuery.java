@@ -23,7 +23,10 @@ import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.MarkLogicQueryTrace;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.query.GraphQuery;
 import org.eclipse.rdf4j.query.GraphQueryResult;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
@@ -31,10 +34,12 @@ import org.eclipse.rdf4j.query.QueryResults;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.eclipse.rdf4j.rio.RDFHandler;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * graph query
@@ -68,8 +73,9 @@ public class MarkLogicGraphQuery extends MarkLogicQuery implements GraphQuery,Ma
     public GraphQueryResult evaluate()
             throws QueryEvaluationException {
         try {
-            sync();
-            return getMarkLogicClient().sendGraphQuery(getQueryString(),getBindings(),getIncludeInferred(),getBaseURI());
+            syncForRead();
+            MarkLogicQueryTrace trace = getMarkLogicClient().newTrace(Operation.CONSTRUCT);
+            return getMarkLogicClient().sendGraphQuery(getQueryDefinition(), getMaxExecutionTime(), trace);
         } catch (IOException e) {
             throw new QueryEvaluationException(e);
         } catch (MarkLogicRdf4jException e) {
@@ -92,4 +98,24 @@ public class MarkLogicGraphQuery extends MarkLogicQuery implements GraphQuery,Ma
             QueryResults.report(queryResult, resultHandler);
         }
     }
+
+    /**
+     * Evaluate graph query without blocking the caller, on the repository's async executor.
+     * Note: take care to always close the GraphQueryResult after use.
+     *
+     * @return CompletableFuture
+     */
+    public CompletableFuture<GraphQueryResult> evaluateAsync() {
+        return getMarkLogicClient().executeAsync(this::evaluate);
+    }
+
+    /**
+     * Returns a Publisher evaluating the query for each subscriber and emitting
+     * statements only as fast as the subscriber requests them.
+     *
+     * @return Publisher
+     */
+    public Publisher<Statement> evaluatePublisher() {
+        return new MarkLogicQueryResultPublisher<>(this::evaluate, getMarkLogicClient().getAsyncExecutor());
+    }
 }
@@ -21,20 +21,27 @@ package com.marklogic.semantics.rdf4j.query;
 
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphPermissions;
+import com.marklogic.client.semantics.SPARQLQueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClientDependent;
+import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.query.Dataset;
 import org.eclipse.rdf4j.query.Query;
+import org.eclipse.rdf4j.query.QueryLanguage;
 import org.eclipse.rdf4j.query.impl.AbstractQuery;
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
 import org.eclipse.rdf4j.repository.sparql.query.QueryStringUtil;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Base query class
  *
@@ -54,6 +61,14 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
 
     private boolean includeInferred;
 
+    private SPARQLQueryDefinition queryDef;
+
+    private String readGraphsQuery;
+
+    private Set<String> readGraphs;
+
+    private long queryDefVersion;
+
     /**
      * Constructor
      *
@@ -72,6 +87,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
         setGraphPerms(graphPerms);
         setConstrainingQueryDefinition(defaultQueryDef);
         setRulesets(rulesets);
+        getQueryTemplate();
     }
 
     /**
@@ -82,6 +98,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     @Override
     public void setMarkLogicClient(MarkLogicClient client) {
         this.client=client;
+        invalidateQueryDefinition();
     }
 
     /**
@@ -178,6 +195,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     @Override
     public void setIncludeInferred(boolean includeInferred) {
         this.includeInferred=includeInferred;
+        invalidateQueryDefinition();
     }
 
     /**
@@ -210,12 +228,17 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     }
 
     /**
-     * Sets maximum execution time for query.
+     * Sets maximum execution time for query, in seconds. Evaluation exceeding it
+     * is aborted and reported as QueryInterruptedException; 0 or less means no limit.
+     * The client stops waiting but the request is not cancelled on the server:
+     * an update timing out may still be applied, and inside a transaction
+     * leaves it only able to roll back.
      *
      * @param maxExecTime
      */
     @Override
     public void setMaxExecutionTime(int maxExecTime) {
+        super.setMaxExecutionTime(maxExecTime);
     }
 
     /**
@@ -224,7 +247,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     @Override
     public int getMaxExecutionTime() {
-        return 0;
+        return super.getMaxExecutionTime();
     }
 
     /**
@@ -243,6 +266,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     @Override
     public void setBaseURI(String baseURI) {
         this.baseURI = baseURI;
+        invalidateQueryDefinition();
     }
 
     /**
@@ -253,6 +277,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     @Override
     public void setConstrainingQueryDefinition(QueryDefinition constrainingQueryDefinition) {
         getMarkLogicClient().setConstrainingQueryDefinition(constrainingQueryDefinition);
+        invalidateQueryDefinition();
     }
 
     /**
@@ -271,6 +296,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     public void setRulesets(SPARQLRuleset ... ruleset){
         getMarkLogicClient().setRulesets(ruleset);
+        invalidateQueryDefinition();
     }
 
     /**
@@ -289,6 +315,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     @Override
     public void setGraphPerms(GraphPermissions graphPerms) {
         getMarkLogicClient().setGraphPerms(graphPerms);
+        invalidateQueryDefinition();
     }
 
     /**
@@ -303,4 +330,94 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     protected void sync() throws MarkLogicRdf4jException {
         getMarkLogicClient().sync();
     }
+
+    /**
+     * Flushes cached writes before evaluation as the read consistency requires.
+     *
+     * @throws MarkLogicRdf4jException
+     */
+    protected void syncForRead() throws MarkLogicRdf4jException {
+        getMarkLogicClient().syncForRead(this::getReadGraphs);
+    }
+
+    /**
+     * Returns the graphs named by the query's FROM and FROM NAMED clauses,
+     * or null when it may read any graph. Parsed once per query string.
+     *
+     * @return Set
+     */
+    protected synchronized Set<String> getReadGraphs() {
+        if (!this.queryString.equals(readGraphsQuery)) {
+            readGraphs = parseReadGraphs(this.queryString, getBaseURI());
+            readGraphsQuery = this.queryString;
+        }
+        return readGraphs;
+    }
+
+    private static Set<String> parseReadGraphs(String queryString, String baseURI) {
+        Dataset dataset;
+        try {
+            dataset = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, queryString, baseURI).getDataset();
+        } catch (RuntimeException e) {
+            // MalformedQueryException included; the server reports syntax errors
+            return null;
+        }
+        if (dataset == null) {
+            return null;
+        }
+        Set<String> graphs = new HashSet<>();
+        for (IRI graph : dataset.getDefaultGraphs()) {
+            graphs.add(graph.stringValue());
+        }
+        for (IRI graph : dataset.getNamedGraphs()) {
+            graphs.add(graph.stringValue());
+        }
+        return graphs.isEmpty() ? null : graphs;
+    }
+
+    /**
+     * Returns a definition for a single evaluation, copied from the query
+     * template built at prepare time with the current bindings applied to
+     * its query string. Overlapping evaluations each get their own copy.
+     *
+     * Settings (base uri, rulesets, constraining query, graph permissions,
+     * optimize level) are only reapplied to the template after one of them
+     * has changed.
+     *
+     * @return SPARQLQueryDefinition
+     */
+    protected SPARQLQueryDefinition getQueryDefinition() {
+        return getMarkLogicClient().copyQueryDefinition(getQueryTemplate(), getQueryString());
+    }
+
+    /**
+     * Returns the query template, rebuilt if settings changed since it was built.
+     * The template is never modified, so it may be copied outside the lock.
+     *
+     * @return SPARQLQueryDefinition
+     */
+    private synchronized SPARQLQueryDefinition getQueryTemplate() {
+        long version = getMarkLogicClient().getRequestContext().getSettingsVersion();
+        if (queryDef == null || queryDefVersion != version) {
+            queryDef = newQueryDefinition();
+            queryDefVersion = version;
+        }
+        return queryDef;
+    }
+
+    /**
+     * Builds a new query template from the current query settings.
+     *
+     * @return SPARQLQueryDefinition
+     */
+    protected SPARQLQueryDefinition newQueryDefinition() {
+        return getMarkLogicClient().newQueryDefinition(getQueryString(), getBaseURI(), getIncludeInferred());
+    }
+
+    /**
+     * Discards the query template so it is rebuilt on next evaluation.
+     */
+    protected synchronized void invalidateQueryDefinition() {
+        this.queryDef = null;
+    }
 }
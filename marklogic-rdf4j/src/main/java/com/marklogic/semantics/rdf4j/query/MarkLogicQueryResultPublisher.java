@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.query;
+
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryResult;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publishes query results to a subscriber as fast as it requests them.
+ *
+ * The query is evaluated on first demand, once per subscription. Results are
+ * pulled from the background parser's bounded queue only when requested, so
+ * the HTTP response is read at the subscriber's pace.
+ *
+ *
+ */
+class MarkLogicQueryResultPublisher<T> implements Publisher<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicQueryResultPublisher.class);
+
+    private final Supplier<? extends QueryResult<T>> query;
+    private final Executor executor;
+
+    /**
+     * Constructor
+     *
+     * @param query evaluates the query
+     * @param executor runs evaluation and delivery
+     */
+    MarkLogicQueryResultPublisher(Supplier<? extends QueryResult<T>> query, Executor executor) {
+        this.query = query;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        subscriber.onSubscribe(new ResultSubscription(subscriber));
+    }
+
+    private class ResultSubscription implements Subscription {
+
+        private final Subscriber<? super T> subscriber;
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        // only accessed from drain()
+        private QueryResult<T> result;
+        private boolean done;
+
+        ResultSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("request must be positive, was " + n);
+            } else {
+                long r, u;
+                do {
+                    r = requested.get();
+                    u = r + n < 0 ? Long.MAX_VALUE : r + n;
+                } while (!requested.compareAndSet(r, u));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    if (cancelled) {
+                        finish();
+                    } else if (invalidRequest != null) {
+                        finish();
+                        subscriber.onError(invalidRequest);
+                    } else {
+                        emit();
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            try {
+                long r = requested.get();
+                long e = 0;
+                if (r > 0 && result == null) {
+                    result = query.get();
+                }
+                while (e != r && !cancelled) {
+                    if (!result.hasNext()) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(result.next());
+                    e++;
+                }
+                if (e > 0 && r != Long.MAX_VALUE) {
+                    requested.addAndGet(-e);
+                }
+            } catch (RuntimeException e) {
+                finish();
+                subscriber.onError(e);
+            }
+        }
+
+        private void finish() {
+            done = true;
+            if (result != null) {
+                try {
+                    result.close();
+                } catch (QueryEvaluationException e) {
+                    logger.debug("MarkLogicQueryResultPublisher result close exception", e);
+                }
+            }
+        }
+    }
+}
@@ -24,13 +24,18 @@ import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.MarkLogicQueryTrace;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
 import org.eclipse.rdf4j.query.*;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Tuple query.
  *
@@ -79,8 +84,9 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
     public TupleQueryResult evaluate(long start, long pageLength)
             throws QueryEvaluationException {
         try {
-            sync();
-            return getMarkLogicClient().sendTupleQuery(getQueryString(), getBindings(), start, pageLength, getIncludeInferred(), getBaseURI());
+            syncForRead();
+            MarkLogicQueryTrace trace = getMarkLogicClient().newTrace(Operation.SELECT);
+            return getMarkLogicClient().sendTupleQuery(getQueryDefinition(), start, pageLength, getMaxExecutionTime(), trace);
         }catch (RepositoryException e) {
             throw new QueryEvaluationException(e.getMessage(), e);
         }catch (MalformedQueryException e) {
@@ -100,7 +106,7 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
     @Override
     public void evaluate(TupleQueryResultHandler resultHandler) throws QueryEvaluationException, TupleQueryResultHandlerException {
         try {
-            sync();
+            syncForRead();
         } catch (MarkLogicRdf4jException e) {
             logger.info(e.getLocalizedMessage());
             throw new QueryEvaluationException(e);
@@ -126,4 +132,35 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
         }
         queryResult.close();
     }
+
+    /**
+     * Evaluate tuple query without blocking the caller, on the repository's async executor.
+     * Note: take care to always close the TupleQueryResult after use.
+     *
+     * @return CompletableFuture
+     */
+    public CompletableFuture<TupleQueryResult> evaluateAsync() {
+        return evaluateAsync(this.start, this.pageLength);
+    }
+
+    /**
+     * Evaluate tuple query with pagination without blocking the caller, on the repository's async executor.
+     *
+     * @param start
+     * @param pageLength
+     * @return CompletableFuture
+     */
+    public CompletableFuture<TupleQueryResult> evaluateAsync(long start, long pageLength) {
+        return getMarkLogicClient().executeAsync(() -> evaluate(start, pageLength));
+    }
+
+    /**
+     * Returns a Publisher evaluating the query for each subscriber and emitting
+     * bindings only as fast as the subscriber requests them.
+     *
+     * @return Publisher
+     */
+    public Publisher<BindingSet> evaluatePublisher() {
+        return new MarkLogicQueryResultPublisher<>(this::evaluate, getMarkLogicClient().getAsyncExecutor());
+    }
 }
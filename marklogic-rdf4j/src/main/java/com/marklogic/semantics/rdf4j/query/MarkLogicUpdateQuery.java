@@ -23,9 +23,13 @@ import com.marklogic.client.FailedRequestException;
 import com.marklogic.client.ForbiddenUserException;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.semantics.SPARQLQueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.MarkLogicQueryTrace;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
 import org.eclipse.rdf4j.query.MalformedQueryException;
+import org.eclipse.rdf4j.query.QueryInterruptedException;
 import org.eclipse.rdf4j.query.Update;
 import org.eclipse.rdf4j.query.UpdateExecutionException;
 import org.eclipse.rdf4j.repository.RepositoryException;
@@ -33,7 +37,7 @@ import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Update query
@@ -65,16 +69,38 @@ public class MarkLogicUpdateQuery extends MarkLogicQuery implements Update,MarkL
     public void execute() throws UpdateExecutionException {
         try {
             sync();
-            getMarkLogicClient().sendUpdateQuery(getQueryString(), getBindings(), getIncludeInferred(), getBaseURI());
+            MarkLogicQueryTrace trace = getMarkLogicClient().newTrace(Operation.UPDATE);
+            getMarkLogicClient().sendUpdateQuery(getQueryDefinition(), getMaxExecutionTime(), trace);
+        }catch(QueryInterruptedException e){
+            throw new UpdateExecutionException(e.getMessage(), e);
         }catch(ForbiddenUserException | FailedRequestException e){
             throw new UpdateExecutionException(e);
         } catch (RepositoryException e) {
             throw new UpdateExecutionException(e);
         } catch (MalformedQueryException e) {
             throw new UpdateExecutionException(e);
-        } catch (IOException e) {
-            throw new UpdateExecutionException(e);
         }
     }
 
+    /**
+     * Updates are built without the constraining query.
+     *
+     * @return SPARQLQueryDefinition
+     */
+    @Override
+    protected SPARQLQueryDefinition newQueryDefinition() {
+        return getMarkLogicClient().newUpdateDefinition(getQueryString(), getBaseURI(), getIncludeInferred());
+    }
+
+    /**
+     * Execute update query without blocking the caller, on the repository's async executor.
+     *
+     * @return CompletableFuture
+     */
+    public CompletableFuture<Void> executeAsync() {
+        return getMarkLogicClient().executeAsync(() -> {
+            execute();
+            return null;
+        });
+    }
 }
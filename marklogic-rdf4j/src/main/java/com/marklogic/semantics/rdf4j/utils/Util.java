@@ -21,6 +21,8 @@ import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.rio.RDFFormat;
 
+import java.util.Locale;
+
 
 public class Util {
     private static Util util = null;
@@ -80,6 +82,32 @@ public class Util {
         return item!=null;
     }
 
+    /**
+     * Public utility method that tests if two host names name the same host,
+     * ignoring case and taking loopback names and addresses as one host.
+     * @param a a host name or address
+     * @param b a host name or address
+     * @return boolean
+     */
+    public static boolean sameHost(String a, String b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return normalizeHost(a).equals(normalizeHost(b));
+    }
+
+    private static String normalizeHost(String host) {
+        String normalized = host.toLowerCase(Locale.ROOT);
+        if (normalized.startsWith("[") && normalized.endsWith("]")) {
+            normalized = normalized.substring(1, normalized.length() - 1);
+        }
+        if (normalized.equals("localhost") || normalized.startsWith("127.")
+                || normalized.equals("::1") || normalized.equals("0:0:0:0:0:0:0:1")) {
+            return "localhost";
+        }
+        return normalized;
+    }
+
     /**
      * Public utility method that skolemizes blank nodes (BNode).
      * @param s the blank node to be skolemized.
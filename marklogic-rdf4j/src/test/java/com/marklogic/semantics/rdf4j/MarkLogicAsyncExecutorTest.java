@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tests the repository's async executor against a stub server, without MarkLogic
+ *
+ *
+ */
+public class MarkLogicAsyncExecutorTest {
+
+    @Test
+    public void testResizeKeepsOpenConnectionsWorking() throws Exception {
+        try (MarkLogicRestStub stub = new MarkLogicRestStub()) {
+            MarkLogicRepository rep = stub.newRepository();
+            rep.initialize();
+            MarkLogicRepositoryConnection conn = rep.getConnection();
+            try {
+                Executor executor = rep.getAsyncExecutor();
+                Assert.assertTrue(conn.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluateAsync().get(10, TimeUnit.SECONDS));
+
+                rep.setAsyncThreads(1);
+                Assert.assertSame(executor, rep.getAsyncExecutor());
+                Assert.assertTrue(conn.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluateAsync().get(10, TimeUnit.SECONDS));
+
+                rep.setAsyncThreads(8);
+                Assert.assertTrue(conn.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluateAsync().get(10, TimeUnit.SECONDS));
+            } finally {
+                conn.close();
+                rep.shutDown();
+            }
+        }
+    }
+}
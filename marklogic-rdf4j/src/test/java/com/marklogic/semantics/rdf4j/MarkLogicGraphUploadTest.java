@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * tests graph uploads against a stub server, without MarkLogic
+ *
+ *
+ */
+public class MarkLogicGraphUploadTest {
+
+    private static final String BASE_URI = "http://example.org/example1/";
+
+    private MarkLogicRestStub stub;
+    private MarkLogicRepository rep;
+
+    @Before
+    public void setUp() throws Exception {
+        stub = new MarkLogicRestStub();
+        rep = stub.newRepository();
+        rep.initialize();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        rep.shutDown();
+        stub.close();
+    }
+
+    @Test
+    public void testConcurrentUploadsKeepTheirFormat() throws Exception {
+        MarkLogicRepositoryConnection turtleConn = rep.getConnection();
+        MarkLogicRepositoryConnection rdfXmlConn = rep.getConnection();
+        try {
+            Resource context = turtleConn.getValueFactory().createIRI("http://marklogic.com/test/upload");
+            File turtle = new File("src/test/resources/testdata/default-graph-1.ttl");
+            File rdfXml = new File("src/test/resources/testdata/test-small.owl");
+            CompletableFuture<Void> turtleLoads = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 20; i++) {
+                    try {
+                        turtleConn.add(turtle, BASE_URI, RDFFormat.TURTLE, context);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            CompletableFuture<Void> rdfXmlLoads = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 20; i++) {
+                    try (InputStream in = new FileInputStream(rdfXml)) {
+                        rdfXmlConn.add(in, BASE_URI, RDFFormat.RDFXML, context);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            turtleLoads.get();
+            rdfXmlLoads.get();
+
+            int uploads = 0;
+            for (MarkLogicRestStub.Request request : stub.getRequests()) {
+                if (!request.getPath().equals("/v1/graphs") || request.getMethod().equals("GET")) {
+                    continue;
+                }
+                uploads++;
+                boolean xml = request.getBody().trim().startsWith("<");
+                String contentType = request.getHeader("Content-Type");
+                Assert.assertTrue(contentType, contentType.startsWith(xml ? "application/rdf+xml" : "text/turtle"));
+            }
+            Assert.assertEquals(40, uploads);
+        } finally {
+            turtleConn.close();
+            rdfXmlConn.close();
+        }
+    }
+
+    @Test
+    public void testStreamAndGzippedFileReachEveryContext() throws Exception {
+        MarkLogicRepositoryConnection conn = rep.getConnection();
+        try {
+            Resource context1 = conn.getValueFactory().createIRI("http://marklogic.com/test/context1");
+            Resource context2 = conn.getValueFactory().createIRI("http://marklogic.com/test/context2");
+            try (InputStream in = new FileInputStream("src/test/resources/testdata/default-graph-1.ttl")) {
+                conn.add(in, BASE_URI, RDFFormat.TURTLE, context1, context2);
+            }
+            assertSameUploads(context1, context2);
+            stub.clearRequests();
+
+            conn.add(new File("src/test/resources/testdata/databases.rdf.gz"), BASE_URI, RDFFormat.RDFXML, context1, context2);
+            assertSameUploads(context1, context2);
+        } finally {
+            conn.close();
+        }
+    }
+
+    // one upload per context, each carrying all the data
+    private void assertSameUploads(Resource... contexts) {
+        List<MarkLogicRestStub.Request> uploads = new ArrayList<>();
+        for (MarkLogicRestStub.Request request : stub.getRequests("POST", "/v1/graphs")) {
+            if (request.getPath().equals("/v1/graphs")) {
+                uploads.add(request);
+            }
+        }
+        Assert.assertEquals(contexts.length, uploads.size());
+        for (int i = 0; i < contexts.length; i++) {
+            Assert.assertTrue(uploads.get(i).getQuery(), uploads.get(i).getQuery().contains(contexts[i].stringValue()));
+            Assert.assertFalse(uploads.get(i).getBody().isEmpty());
+            Assert.assertEquals(uploads.get(0).getBody(), uploads.get(i).getBody());
+        }
+    }
+}
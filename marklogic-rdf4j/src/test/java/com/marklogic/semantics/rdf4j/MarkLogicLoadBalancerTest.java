@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * tests MarkLogicLoadBalancer against stub servers, without MarkLogic
+ *
+ *
+ */
+public class MarkLogicLoadBalancerTest {
+
+    @Test
+    public void testLoadBalancedReadsWithFailover() throws Exception {
+        HttpServer first = stubServer();
+        HttpServer second = stubServer();
+        HttpServer down = stubServer();
+        down.stop(0);
+        List<DatabaseClient> databaseClients = new ArrayList<>();
+        for (HttpServer server : Arrays.asList(first, second, down)) {
+            databaseClients.add(DatabaseClientFactory.newClient("localhost", server.getAddress().getPort(), new DatabaseClientFactory.DigestAuthContext("admin", "admin")));
+        }
+        MarkLogicRepository lbRep = new MarkLogicRepository(databaseClients);
+        lbRep.getLoadBalancer().setHealthCheckInterval(60000);
+        lbRep.initialize();
+        MarkLogicRepositoryConnection lbConn = lbRep.getConnection();
+        try {
+            for (int i = 0; i < 6; i++) {
+                Assert.assertTrue(lbConn.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluate());
+            }
+            List<MarkLogicLoadBalancer.Host> hosts = lbRep.getLoadBalancer().getHosts();
+            Assert.assertTrue(hosts.get(0).getRequestCount() > 0);
+            Assert.assertTrue(hosts.get(1).getRequestCount() > 0);
+            Assert.assertEquals(1, hosts.get(2).getRequestCount());
+            Assert.assertEquals(1, hosts.get(2).getFailureCount());
+            Assert.assertFalse(hosts.get(2).isHealthy());
+            Assert.assertEquals(0, hosts.get(0).getOutstandingRequests());
+        } finally {
+            lbConn.close();
+            lbRep.shutDown();
+            first.stop(0);
+            second.stop(0);
+        }
+    }
+
+    @Test
+    public void testStreamingReadsOutstandingUntilClosed() throws Exception {
+        List<DatabaseClient> databaseClients = Arrays.asList(nullClient(), nullClient());
+        MarkLogicLoadBalancer balancer = new MarkLogicLoadBalancer(databaseClients);
+        balancer.setStrategy(MarkLogicLoadBalancer.Strategy.LEAST_OUTSTANDING);
+        try {
+            List<DatabaseClient> used = new ArrayList<>();
+            InputStream first = balancer.executeStreaming((client, manager) -> {
+                used.add(client);
+                return new ByteArrayInputStream(new byte[16]);
+            });
+            MarkLogicLoadBalancer.Host busy = balancer.getHosts().get(databaseClients.indexOf(used.get(0)));
+            Assert.assertEquals(1, busy.getOutstandingRequests());
+
+            // the open result keeps its host busy, so reads go to the other host
+            for (int i = 0; i < 4; i++) {
+                Assert.assertTrue(balancer.execute((client, manager) -> client != used.get(0)));
+            }
+            first.close();
+            first.close();
+            Assert.assertEquals(0, busy.getOutstandingRequests());
+        } finally {
+            balancer.shutdown(null);
+        }
+    }
+
+    // a DatabaseClient which is never sent requests
+    private static DatabaseClient nullClient() {
+        return (DatabaseClient) Proxy.newProxyInstance(DatabaseClient.class.getClassLoader(), new Class<?>[]{DatabaseClient.class}, (proxy, method, args) -> {
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            }
+            return method.getName().equals("hashCode") ? System.identityHashCode(proxy) : null;
+        });
+    }
+
+    // answers every request as a successful ASK
+    private static HttpServer stubServer() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "{\"boolean\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/sparql-results+json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -19,6 +19,7 @@
  */
 package com.marklogic.semantics.rdf4j;
 
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics.Operation;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.junit.*;
@@ -33,7 +34,11 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
@@ -111,6 +116,234 @@ public class MarkLogicRepositoryCacheTest extends Rdf4jTestBase {
         conn.clear();
     }
 
+    @Test
+    public void testGraphAwareReadConsistency() throws Exception {
+        Set<String> flushes = new HashSet<>();
+        int[] reads = {0};
+        rep.setReadConsistency(MarkLogicReadConsistency.GRAPH_AWARE);
+        rep.setMetrics(new MarkLogicMetrics() {
+            @Override
+            public synchronized void readSynced(MarkLogicReadConsistency consistency, boolean flushed) {
+                assertEquals(MarkLogicReadConsistency.GRAPH_AWARE, consistency);
+                flushes.add(reads[0]++ + ":" + flushed);
+            }
+        });
+        MarkLogicRepositoryConnection graphAware = rep.getConnection();
+        try {
+            graphAware.configureWriteCache(60000, 60000, 10000);
+            IRI alice = f.createIRI("http://example.org/people/alice");
+            IRI name = f.createIRI("http://example.org/ontology/name");
+            Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+            graphAware.add(alice, name, f.createLiteral("Alice"), context1);
+
+            Assert.assertFalse(graphAware.prepareBooleanQuery("ASK FROM <http://marklogic.com/test/context2> { ?s ?p ?o }").evaluate());
+            Assert.assertTrue(graphAware.prepareBooleanQuery("ASK FROM <http://marklogic.com/test/context1> { ?s ?p ?o }").evaluate());
+            Assert.assertTrue(flushes.contains("0:false"));
+            Assert.assertTrue(flushes.contains("1:true"));
+
+            graphAware.add(alice, name, f.createLiteral("Alice2"), context1);
+            Assert.assertTrue(graphAware.prepareBooleanQuery("ASK { ?s ?p \"Alice2\" }").evaluate());
+            Assert.assertTrue(flushes.contains("2:true"));
+            graphAware.clear(context1);
+        } finally {
+            graphAware.close();
+        }
+    }
+
+    @Test
+    public void testWriteJournal() throws Exception {
+        File journalDir = Files.createTempDirectory("marklogic-journal").toFile();
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+
+        // a journal left behind by a JVM which died before flushing
+        File orphan = new File(journalDir, "marklogic-write-orphan.nq");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(orphan))) {
+            writer.write("<http://example.org/people/alice> <http://example.org/ontology/name> \"Alice \\\"1\\\"\" <http://marklogic.com/test/context1> .\n");
+            writer.write("<http://example.org/people/alice> <http://example.org/ontology/na");
+        }
+        MarkLogicRepository journaled = new MarkLogicRepository(adminClient);
+        journaled.setWriteJournal(journalDir);
+        journaled.initialize();
+        Assert.assertFalse(orphan.exists());
+        Assert.assertTrue(conn.hasStatement(alice, name, f.createLiteral("Alice \"1\""), false, context1));
+
+        MarkLogicRepositoryConnection journaling = journaled.getConnection();
+        try {
+            journaling.configureWriteCache(60000, 60000, 10000);
+            journaling.add(alice, name, f.createLiteral("Alice2"), context1);
+            File[] journals = journalDir.listFiles();
+            assertEquals(1, journals.length);
+            Assert.assertTrue(journals[0].length() > 0);
+            journaling.sync();
+            assertEquals(0, journals[0].length());
+            journaling.clear(context1);
+        } finally {
+            journaling.close();
+        }
+        assertEquals(0, journalDir.listFiles().length);
+        Assert.assertTrue(journalDir.delete());
+    }
+
+    @Test
+    public void testWriteCacheTuner() throws Exception {
+        MarkLogicWriteCacheTuner tuner = new MarkLogicWriteCacheTuner();
+        tuner.setMinCacheSize(10);
+        tuner.setMaxCacheSize(1000);
+        tuner.setIncrement(50);
+        tuner.setTargetLatency(100);
+        tuner.setMaxPayloadSize(100000);
+
+        // full fast batches grow, slow or failed ones halve, payload caps
+        assertEquals(150, tuner.nextCacheSize(100, 100, 1000000, 1000, false));
+        assertEquals(100, tuner.nextCacheSize(100, 40, 1000000, 1000, false));
+        assertEquals(50, tuner.nextCacheSize(100, 100, 200000000, 1000, false));
+        assertEquals(10, tuner.nextCacheSize(15, 15, 1000000, 0, true));
+        assertEquals(500, tuner.nextCacheSize(600, 600, 1000000, 120000, false));
+        assertEquals(1600, tuner.nextCacheMillis(800, 200000000, false));
+        assertEquals(600, tuner.nextCacheMillis(800, 1000000, false));
+
+        Set<Long> sizes = new HashSet<>();
+        rep.setWriteCacheTuner(tuner);
+        rep.setMetrics(new MarkLogicMetrics() {
+            @Override
+            public synchronized void writeCacheTuned(Operation operation, long cacheSize, long cacheMillis) {
+                assertEquals(Operation.INSERT_DATA, operation);
+                sizes.add(cacheSize);
+            }
+        });
+        MarkLogicRepositoryConnection tuned = rep.getConnection();
+        try {
+            IRI alice = f.createIRI("http://example.org/people/alice");
+            IRI name = f.createIRI("http://example.org/ontology/name");
+            Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+            for (int i = 0; i < 2000; i++) {
+                tuned.add(alice, name, f.createLiteral("Alice" + i), context1);
+            }
+            tuned.sync();
+            assertEquals(2000, tuned.size(context1));
+            Assert.assertFalse(sizes.isEmpty());
+            for (long size : sizes) {
+                Assert.assertTrue(size >= 10 && size <= 1000);
+            }
+            tuned.clear(context1);
+        } finally {
+            tuned.close();
+        }
+    }
+
+    @Test
+    public void testWriteCacheBytes() throws Exception {
+        List<Long> flushed = new ArrayList<>();
+        rep.setMetrics(new MarkLogicMetrics() {
+            @Override
+            public synchronized void cacheFlushed(Operation operation, long statements, long nanos, boolean failed) {
+                flushed.add(statements);
+            }
+        });
+        MarkLogicRepositoryConnection bytes = rep.getConnection();
+        try {
+            bytes.configureWriteCache(60000, 60000, 10000);
+            bytes.configureWriteCacheBytes(4096);
+            IRI alice = f.createIRI("http://example.org/people/alice");
+            IRI text = f.createIRI("http://example.org/ontology/text");
+            Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+            char[] chars = new char[1000];
+            Arrays.fill(chars, 'x');
+            String label = new String(chars);
+            for (int i = 0; i < 50; i++) {
+                bytes.add(alice, text, f.createLiteral(label + i), context1);
+            }
+            bytes.sync();
+            assertEquals(50, bytes.size(context1));
+            // estimates allow for literals doubling when escaped, so few fit under 4096 bytes
+            Assert.assertTrue(flushed.size() >= 25);
+            for (long statements : flushed) {
+                Assert.assertTrue(statements <= 2);
+            }
+            bytes.clear(context1);
+        } finally {
+            bytes.close();
+        }
+    }
+
+    @Test
+    public void testSharedCacheScheduler() throws Exception {
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        Resource context1 = f.createIRI("http://marklogic.com/test/context1");
+        List<MarkLogicRepositoryConnection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < 20; i++) {
+                MarkLogicRepositoryConnection connection = rep.getConnection();
+                connection.configureWriteCache(0, 200, 10000);
+                connections.add(connection);
+            }
+            connections.get(0).add(alice, name, f.createLiteral("Alice"), context1);
+
+            // flushed on its deadline, seen by a connection without cached triples
+            long deadline = System.currentTimeMillis() + 5000;
+            while (conn.size(context1) == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, conn.size(context1));
+
+            int flushThreads = 0;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                Assert.assertFalse(thread.getName().startsWith("Timer-"));
+                if (thread.getName().startsWith("marklogic-cache-flush")) {
+                    flushThreads++;
+                }
+            }
+            Assert.assertTrue(flushThreads <= 4);
+        } finally {
+            for (MarkLogicRepositoryConnection connection : connections) {
+                connection.close();
+            }
+        }
+        conn.clear(context1);
+    }
+
+    @Test
+    public void testParallelFlush() throws Exception {
+        List<Operation> requests = new ArrayList<>();
+        rep.setFlushParallelism(4);
+        rep.setMetrics(new MarkLogicMetrics() {
+            @Override
+            public synchronized void requestCompleted(Operation operation, long nanos, boolean failed) {
+                if (operation == Operation.INSERT_DATA) {
+                    requests.add(operation);
+                }
+            }
+        });
+        MarkLogicRepositoryConnection parallel = rep.getConnection();
+        try {
+            parallel.configureWriteCache(0, 60000, 100000);
+            IRI alice = f.createIRI("http://example.org/people/alice");
+            IRI name = f.createIRI("http://example.org/ontology/name");
+            for (int i = 0; i < 6000; i++) {
+                parallel.add(alice, name, f.createLiteral("Alice" + i), f.createIRI("http://marklogic.com/test/context" + (i % 6)));
+            }
+            parallel.sync();
+            assertEquals(6000, parallel.size());
+            Assert.assertTrue(requests.size() > 1 && requests.size() <= 4);
+
+            // one request at a time inside a transaction
+            requests.clear();
+            parallel.begin();
+            for (int i = 0; i < 6000; i++) {
+                parallel.add(alice, name, f.createLiteral("Bob" + i), f.createIRI("http://marklogic.com/test/context" + (i % 6)));
+            }
+            parallel.commit();
+            assertEquals(12000, parallel.size());
+            assertEquals(1, requests.size());
+            parallel.clear();
+        } finally {
+            parallel.close();
+        }
+    }
+
     @Test
     public void testSizeCommitWithWriteCache()
             throws Exception
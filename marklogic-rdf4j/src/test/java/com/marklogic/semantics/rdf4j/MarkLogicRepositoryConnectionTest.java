@@ -240,15 +240,22 @@ public class MarkLogicRepositoryConnectionTest extends Rdf4jTestBase {
     }
 
     // https://github.com/marklogic/marklogic-sesame/issues/64
-    // not implemented just yet
-    @Ignore
+    @Test
     public void testAddGZippedRDF() throws Exception {
         File inputFile = new File("src/test/resources/testdata/databases.rdf.gz");
-        FileInputStream fis = new FileInputStream(inputFile);
         String baseURI = "http://example.org/example1/";
         Resource context1 = conn.getValueFactory().createIRI("http://marklogic.com/test/context1");
         Resource context2 = conn.getValueFactory().createIRI("http://marklogic.com/test/context2");
-        conn.add(fis, baseURI, RDFFormat.RDFXML, context1, context2);
+        conn.add(inputFile, baseURI, RDFFormat.RDFXML, context1, context2);
+        long size = conn.size(context1);
+        Assert.assertTrue(size > 0);
+        Assert.assertEquals(size, conn.size(context2));
+        conn.clear(context1, context2);
+        try (FileInputStream fis = new FileInputStream(inputFile)) {
+            conn.add(fis, baseURI, RDFFormat.RDFXML, context1, context2);
+        }
+        Assert.assertEquals(size, conn.size(context1));
+        Assert.assertEquals(size, conn.size(context2));
         conn.clear(context1, context2);
     }
 
@@ -395,6 +402,29 @@ public class MarkLogicRepositoryConnectionTest extends Rdf4jTestBase {
         conn.clear(context5, context6);
     }
 
+    @Test
+    public void testCachedContextIDs()
+            throws Exception {
+        Resource context7 = conn.getValueFactory().createIRI("http://marklogic.com/test/context7");
+        ValueFactory f= conn.getValueFactory();
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+
+        rep.getGraphCache().setMaxAge(60000);
+        try {
+            List<Resource> before = Iterations.asList(conn.getContextIDs());
+            Assert.assertFalse(before.contains(context7));
+
+            conn.add(alice, name, f.createLiteral("Alice"), context7);
+            Assert.assertTrue(Iterations.asList(conn.getContextIDs()).contains(context7));
+
+            conn.clear(context7);
+            Assert.assertEquals(before, Iterations.asList(conn.getContextIDs()));
+        } finally {
+            rep.getGraphCache().setMaxAge(0);
+        }
+    }
+
     @Test
     public void testTransaction1() throws Exception {
         File inputFile = new File("src/test/resources/testdata/named-graph-1.ttl");
@@ -558,6 +588,36 @@ public class MarkLogicRepositoryConnectionTest extends Rdf4jTestBase {
         conn.clear(context2);
     }
 
+    @Test
+    public void testApproximateSizeFromStatistics() throws Exception{
+        Resource context1 = conn.getValueFactory().createIRI("http://marklogic.com/test/context1");
+        Resource context2 = conn.getValueFactory().createIRI("http://marklogic.com/test/context2");
+        ValueFactory f= conn.getValueFactory();
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+
+        rep.getStatistics().setMode(MarkLogicRepositoryStatistics.Mode.APPROXIMATE);
+        try {
+            conn.add(alice, name, f.createLiteral("Alice1"), context1);
+            Assert.assertEquals(1, conn.size(context1));
+
+            conn.add(alice, name, f.createLiteral("Alice2"), context1);
+            conn.add(alice, name, f.createLiteral("Alice3"), context2);
+            Assert.assertEquals(2, conn.size(context1));
+            Assert.assertEquals(3, conn.size(context1, context2));
+
+            conn.clear(context1);
+            Assert.assertEquals(0, conn.size(context1));
+            Assert.assertEquals(1, conn.size(context2));
+
+            // pattern removal makes the count stale, so it is reconciled with the server
+            conn.remove(alice, null, null, context2);
+            Assert.assertEquals(0, conn.size(context2));
+        } finally {
+            rep.getStatistics().setMode(MarkLogicRepositoryStatistics.Mode.EXACT);
+        }
+    }
+
     @Test
     public void testStatementWithDefinedContext1() throws Exception{
         Resource context1 = conn.getValueFactory().createIRI("http://marklogic.com/test/context1");
@@ -573,6 +633,10 @@ public class MarkLogicRepositoryConnectionTest extends Rdf4jTestBase {
         assertEquals("Statement must incrment size of database.", 1, conn.size());
         assertEquals("Statement must incrment size of database.", 1, conn.size(context1));
         assertEquals("Statement must not incrment size of default graph.", 0, conn.size((Resource) null));
+        Assert.assertFalse(conn.isEmpty());
+        Assert.assertFalse(conn.isEmpty(context1));
+        Assert.assertTrue(conn.isEmpty((Resource) null));
+        Assert.assertEquals(1, conn.cachedSize(60000));
 
 
         String checkAliceQuery = "ASK { GRAPH <http://marklogic.com/test/context1> {<http://example.org/people/alice> <http://example.org/ontology/name> 'Alice1' .}}";
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * tests MarkLogicRepositoryStatistics bookkeeping, without MarkLogic
+ *
+ *
+ */
+public class MarkLogicRepositoryStatisticsTest {
+
+    private final IRI context1 = SimpleValueFactory.getInstance().createIRI("http://marklogic.com/test/context1");
+    private final IRI context2 = SimpleValueFactory.getInstance().createIRI("http://marklogic.com/test/context2");
+
+    @Test
+    public void testRemoveMarksGraphStaleWithoutDecrementing() throws Exception {
+        MarkLogicRepositoryStatistics statistics = reconciled(0L, 2L);
+
+        // the removed triple may never have existed, so only the server knows the new count
+        statistics.removed(context1);
+        statistics.removed(context1);
+        Assert.assertTrue(statistics.isStale(60000, context1.stringValue()));
+        Assert.assertFalse(statistics.isStale(60000, context2.stringValue()));
+        Assert.assertEquals(0, statistics.size(context1.stringValue()));
+        Assert.assertEquals(2, statistics.size(context2.stringValue()));
+    }
+
+    @Test
+    public void testRemoveFromAllGraphsMarksEverythingStale() throws Exception {
+        MarkLogicRepositoryStatistics statistics = reconciled(1L, 2L);
+        statistics.removed();
+        Assert.assertTrue(statistics.isStale(60000, context2.stringValue()));
+    }
+
+    private MarkLogicRepositoryStatistics reconciled(long count1, long count2) {
+        Map<String, Long> counts = new HashMap<>();
+        counts.put(context1.stringValue(), count1);
+        counts.put(context2.stringValue(), count2);
+        MarkLogicRepositoryStatistics statistics = new MarkLogicRepositoryStatistics();
+        statistics.reconcile(counts);
+        Assert.assertFalse(statistics.isStale(60000));
+        return statistics;
+    }
+}
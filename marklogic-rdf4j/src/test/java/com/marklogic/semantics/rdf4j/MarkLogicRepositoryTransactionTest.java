@@ -144,6 +144,90 @@ public class MarkLogicRepositoryTransactionTest extends Rdf4jTestBase {
         assertThat(conn.size(), is(equalTo(1L)));
     }
 
+    @Test
+    public void testConcurrentTransactionsPerConnection()
+            throws Exception
+    {
+        MarkLogicRepositoryConnection other = rep.getConnection();
+
+        Resource context5 = conn.getValueFactory().createIRI("http://marklogic.com/test/context5");
+        Resource context6 = conn.getValueFactory().createIRI("http://marklogic.com/test/context6");
+
+        ValueFactory vf= conn.getValueFactory();
+        IRI fei = vf.createIRI("http://marklogicsparql.com/id#3333");
+        IRI age = vf.createIRI("http://marklogicsparql.com/addressbook#age");
+        Literal feiage = vf.createLiteral(25);
+
+        try {
+            conn.begin();
+            other.begin();
+            Assert.assertNotSame(conn.getTransaction(), other.getTransaction());
+            conn.add(fei, age, feiage, context5);
+            other.add(fei, age, feiage, context6);
+            assertThat(conn.size(context5), is(equalTo(1L)));
+            assertThat(conn.size(context6), is(equalTo(0L)));
+            assertThat(other.size(context6), is(equalTo(1L)));
+            other.rollback();
+            conn.commit();
+            assertThat(other.size(context5), is(equalTo(1L)));
+            assertThat(other.size(context6), is(equalTo(0L)));
+        } finally {
+            if (other.isActive()) {
+                other.rollback();
+            }
+            other.close();
+        }
+    }
+
+    @Test
+    public void testBufferedTransactionCommit()
+            throws Exception
+    {
+        Resource context5 = conn.getValueFactory().createIRI("http://marklogic.com/test/context5");
+
+        ValueFactory vf= conn.getValueFactory();
+        IRI fei = vf.createIRI("http://marklogicsparql.com/id#3333");
+        IRI age = vf.createIRI("http://marklogicsparql.com/addressbook#age");
+
+        // tiny limits force a spill to disk and several update requests
+        conn.configureTransactionBuffer(true, 2, 2);
+        assertThat(conn.size(), is(equalTo(0L)));
+        conn.begin();
+        for (int i = 0; i < 5; i++) {
+            conn.add(fei, age, vf.createLiteral(i), context5);
+        }
+        conn.remove(fei, age, vf.createLiteral(0), context5);
+        conn.commit();
+        assertThat(conn.size(), is(equalTo(4L)));
+
+        conn.begin();
+        conn.add(fei, age, vf.createLiteral(5), context5);
+        conn.rollback();
+        assertThat(conn.size(), is(equalTo(4L)));
+    }
+
+    @Test
+    public void testBufferedTransactionSpilledUpload()
+            throws Exception
+    {
+        Resource context5 = conn.getValueFactory().createIRI("http://marklogic.com/test/context5");
+
+        ValueFactory vf= conn.getValueFactory();
+        IRI fei = vf.createIRI("http://marklogicsparql.com/id#3333");
+        IRI name = vf.createIRI("http://marklogicsparql.com/addressbook#firstName");
+
+        // spilled adds are merged from the spill file, in the default graph and context5
+        conn.configureTransactionBuffer(true, 10, 100);
+        conn.begin();
+        for (int i = 0; i < 50; i++) {
+            conn.add(fei, name, vf.createLiteral("Fei \"" + i + "\"\n", "en"), i % 2 == 0 ? context5 : null);
+        }
+        conn.commit();
+        assertThat(conn.size(context5), is(equalTo(25L)));
+        assertThat(conn.size(), is(equalTo(50L)));
+        assertThat(conn.hasStatement(fei, name, vf.createLiteral("Fei \"48\"\n", "en"), false, context5), is(true));
+    }
+
     @Test
     public void testMultipleCommit()
             throws Exception
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import com.marklogic.client.DatabaseClientFactory;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+/**
+ * tests MarkLogicRequestCompression against a stub server, without MarkLogic
+ *
+ *
+ */
+public class MarkLogicRequestCompressionTest {
+
+    private static final int THRESHOLD = 4096;
+
+    private static final String BASE_URI = "http://example.org/example1/";
+
+    private MarkLogicRestStub stub;
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        DatabaseClientFactory.addConfigurator(new MarkLogicRequestCompression(THRESHOLD));
+        stub = new MarkLogicRestStub();
+        rep = stub.newRepository();
+        rep.initialize();
+        conn = rep.getConnection();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        // configurators apply to every client created afterwards
+        DatabaseClientFactory.removeConfigurators();
+        conn.close();
+        rep.shutDown();
+        stub.close();
+    }
+
+    @Test
+    public void testUpdatesBelowThresholdAreNotCompressed() throws Exception {
+        String update = "INSERT DATA { <http://example.org/s> <http://example.org/p> \"small\" }";
+        conn.prepareUpdate(update).execute();
+        MarkLogicRestStub.Request request = lastRequest("POST", "/v1/graphs/sparql");
+        Assert.assertNull(request.getHeader("Content-Encoding"));
+        Assert.assertTrue(request.getBody().contains("small"));
+    }
+
+    @Test
+    public void testUpdatesAtThresholdAreCompressed() throws Exception {
+        StringBuilder label = new StringBuilder();
+        while (label.length() < THRESHOLD) {
+            label.append("compressible ");
+        }
+        String update = "INSERT DATA { <http://example.org/s> <http://example.org/p> \"" + label + "\" }";
+        conn.prepareUpdate(update).execute();
+        MarkLogicRestStub.Request request = lastRequest("POST", "/v1/graphs/sparql");
+        Assert.assertEquals("gzip", request.getHeader("Content-Encoding"));
+        Assert.assertTrue(request.getBody().contains(label));
+        Assert.assertTrue(request.getLength() < request.getBody().length());
+    }
+
+    @Test
+    public void testUploadsOfUnknownLengthAreCompressed() throws Exception {
+        File inputFile = new File("src/test/resources/testdata/default-graph-1.ttl");
+        Assert.assertTrue(inputFile.length() < THRESHOLD);
+        Resource context = conn.getValueFactory().createIRI("http://marklogic.com/test/compression");
+
+        conn.add(inputFile, BASE_URI, RDFFormat.TURTLE, context);
+        Assert.assertNull(lastRequest("POST", "/v1/graphs").getHeader("Content-Encoding"));
+        stub.clearRequests();
+
+        try (InputStream in = new FileInputStream(inputFile)) {
+            conn.add(in, BASE_URI, RDFFormat.TURTLE, context);
+        }
+        MarkLogicRestStub.Request request = lastRequest("POST", "/v1/graphs");
+        Assert.assertEquals("gzip", request.getHeader("Content-Encoding"));
+        Assert.assertTrue(request.getBody().contains("http://"));
+    }
+
+    private MarkLogicRestStub.Request lastRequest(String method, String path) {
+        MarkLogicRestStub.Request last = null;
+        for (MarkLogicRestStub.Request request : stub.getRequests(method, path)) {
+            if (request.getPath().equals(path)) {
+                last = request;
+            }
+        }
+        Assert.assertNotNull(method + " " + path, last);
+        return last;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import com.marklogic.client.DatabaseClientFactory;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Embedded stand-in for the MarkLogic REST endpoints, for tests that check
+ * what the client sends rather than what the server does.
+ *
+ * /v1/graphs/sparql answers ASK with true, other queries with empty results
+ * and updates with 204. /v1/graphs accepts merges and deletes, /v1/transactions
+ * opens transactions and accepts commit and rollback. Every request is
+ * recorded with its body, inflated when gzip encoded. A request can be made
+ * to fail with a 500 response.
+ *
+ *
+ */
+public class MarkLogicRestStub implements AutoCloseable {
+
+    /**
+     * A request received by the stub.
+     */
+    public static class Request {
+        private final String method;
+        private final String path;
+        private final String query;
+        private final Headers headers;
+        private final byte[] body;
+        private final long length;
+
+        Request(String method, String path, String query, Headers headers, byte[] body, long length) {
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.headers = headers;
+            this.body = body;
+            this.length = length;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the decoded query string, or an empty string.
+         *
+         * @return String
+         */
+        public String getQuery() {
+            return query == null ? "" : query;
+        }
+
+        public String getHeader(String name) {
+            return headers.getFirst(name);
+        }
+
+        /**
+         * Returns the body, inflated when gzip encoded.
+         *
+         * @return String
+         */
+        public String getBody() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the number of body bytes on the wire.
+         *
+         * @return long
+         */
+        public long getLength() {
+            return length;
+        }
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "marklogic-rest-stub");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong transactions = new AtomicLong();
+
+    private volatile long responseDelay;
+
+    private volatile String failPath;
+
+    private final AtomicInteger failCountdown = new AtomicInteger(-1);
+
+    /**
+     * Starts the stub on a free local port.
+     *
+     * @throws IOException
+     */
+    public MarkLogicRestStub() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/v1/graphs/sparql", this::sparql);
+        server.createContext("/v1/graphs", this::graphs);
+        server.createContext("/v1/transactions", this::transactions);
+        server.createContext("/", exchange -> {
+            record(exchange);
+            respond(exchange, 204, null, null);
+        });
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns a new, uninitialized repository connected to the stub.
+     *
+     * @return MarkLogicRepository
+     */
+    public MarkLogicRepository newRepository() {
+        return new MarkLogicRepository("localhost", getPort(), new DatabaseClientFactory.DigestAuthContext("admin", "admin"));
+    }
+
+    /**
+     * Delays every response by millis, to simulate a slow server.
+     *
+     * @param millis
+     */
+    public void setResponseDelay(long millis) {
+        this.responseDelay = millis;
+    }
+
+    /**
+     * Returns requests received so far, oldest first.
+     *
+     * @return List
+     */
+    public List<Request> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    /**
+     * Returns requests received so far to paths starting with path, oldest first.
+     *
+     * @param method
+     * @param path
+     * @return List
+     */
+    public List<Request> getRequests(String method, String path) {
+        List<Request> matching = new ArrayList<>();
+        for (Request request : requests) {
+            if (request.getMethod().equals(method) && request.getPath().startsWith(path)) {
+                matching.add(request);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Answers one request to a path starting with path with 500, after the
+     * given number of such requests succeeded.
+     *
+     * @param path
+     * @param successes
+     */
+    public void failAfter(String path, int successes) {
+        this.failPath = path;
+        failCountdown.set(successes);
+    }
+
+    public void clearRequests() {
+        requests.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void sparql(HttpExchange exchange) throws IOException {
+        Request request = record(exchange);
+        if (failing(request)) {
+            respond(exchange, 500, null, null);
+            return;
+        }
+        String contentType = request.getHeader("Content-Type");
+        if (contentType != null && contentType.contains("sparql-update")) {
+            respond(exchange, 204, null, null);
+            return;
+        }
+        String query = (request.getBody().isEmpty() ? request.getQuery() : request.getBody()).toUpperCase();
+        if (query.contains("ASK")) {
+            respond(exchange, 200, "application/sparql-results+json", "{\"boolean\":true}");
+        } else if (query.contains("CONSTRUCT") || query.contains("DESCRIBE")) {
+            respond(exchange, 200, "application/n-triples", "");
+        } else {
+            respond(exchange, 200, "application/sparql-results+json", "{\"head\":{\"vars\":[]},\"results\":{\"bindings\":[]}}");
+        }
+    }
+
+    private void graphs(HttpExchange exchange) throws IOException {
+        if (failing(record(exchange))) {
+            respond(exchange, 500, null, null);
+        } else if ("GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 200, "application/n-triples", "");
+        } else {
+            respond(exchange, 204, null, null);
+        }
+    }
+
+    private void transactions(HttpExchange exchange) throws IOException {
+        record(exchange);
+        String path = exchange.getRequestURI().getPath();
+        if ("POST".equals(exchange.getRequestMethod()) && path.matches("/v1/transactions/?")) {
+            exchange.getResponseHeaders().set("Location", "/v1/transactions/" + transactions.incrementAndGet());
+            respond(exchange, 303, null, null);
+        } else {
+            respond(exchange, 204, null, null);
+        }
+    }
+
+    private boolean failing(Request request) {
+        String path = failPath;
+        return path != null && request.getPath().startsWith(path) && failCountdown.getAndDecrement() == 0;
+    }
+
+    private Request record(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = readAll(in);
+        }
+        long length = body.length;
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = readAll(in);
+            }
+        }
+        Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                exchange.getRequestURI().getQuery(), exchange.getRequestHeaders(), body, length);
+        requests.add(request);
+        return request;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        long delay = responseDelay;
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] bytes = body == null ? null : body.getBytes(StandardCharsets.UTF_8);
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        exchange.sendResponseHeaders(status, bytes == null || bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (bytes != null) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import com.marklogic.client.MarkLogicIOException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * tests MarkLogicRetryPolicy, without a server
+ *
+ *
+ */
+public class MarkLogicRetryPolicyTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void testRetryTransientFailures() throws Exception {
+        MarkLogicRetryPolicy retryPolicy = new MarkLogicRetryPolicy();
+        retryPolicy.setInitialDelay(1);
+        int[] attempts = {0};
+        String result = retryPolicy.execute(() -> {
+            if (++attempts[0] < 3) {
+                throw new MarkLogicIOException("connection reset");
+            }
+            return "ok";
+        });
+        Assert.assertEquals("ok", result);
+        Assert.assertEquals(2, retryPolicy.getRetryCount());
+        Assert.assertEquals(0, retryPolicy.getGiveUpCount());
+
+        exception.expect(MarkLogicIOException.class);
+        try {
+            retryPolicy.execute(() -> { throw new MarkLogicIOException("connection refused"); });
+        } finally {
+            Assert.assertEquals(4, retryPolicy.getRetryCount());
+            Assert.assertEquals(1, retryPolicy.getGiveUpCount());
+        }
+    }
+
+    @Test
+    public void testNoRetryOfPermanentFailures() throws Exception {
+        MarkLogicRetryPolicy retryPolicy = new MarkLogicRetryPolicy();
+        exception.expect(IllegalStateException.class);
+        try {
+            retryPolicy.execute(() -> { throw new IllegalStateException("not transient"); });
+        } finally {
+            Assert.assertEquals(0, retryPolicy.getRetryCount());
+            Assert.assertEquals(0, retryPolicy.getGiveUpCount());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j;
+
+import com.marklogic.client.semantics.Capability;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * tests buffered transactions against a stub server, without MarkLogic
+ *
+ *
+ */
+public class MarkLogicTransactionBufferTest {
+
+    private MarkLogicRestStub stub;
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        stub = new MarkLogicRestStub();
+        rep = stub.newRepository();
+        rep.initialize();
+        conn = rep.getConnection();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+        rep.shutDown();
+        stub.close();
+    }
+
+    @Test
+    public void testSpilledUploadKeepsGraphPerms() throws Exception {
+        ValueFactory vf = conn.getValueFactory();
+        IRI subject = vf.createIRI("http://marklogicsparql.com/id#3333");
+        IRI name = vf.createIRI("http://marklogicsparql.com/addressbook#firstName");
+        IRI context = vf.createIRI("http://marklogic.com/test/context5");
+
+        // queries hand the connection's default permissions to its writes
+        conn.setDefaultGraphPerms(conn.getDefaultGraphPerms().permission("app-user", Capability.READ));
+        conn.prepareUpdate("CLEAR SILENT GRAPH <http://marklogic.com/test/context5>");
+
+        conn.configureTransactionBuffer(true, 10, 100);
+        conn.begin();
+        for (int i = 0; i < 50; i++) {
+            conn.add(subject, name, vf.createLiteral("Fei " + i), context);
+        }
+        stub.clearRequests();
+        conn.commit();
+
+        for (MarkLogicRestStub.Request request : stub.getRequests()) {
+            Assert.assertFalse("spilled adds merged without permissions",
+                    request.getPath().equals("/v1/graphs") && !request.getMethod().equals("GET"));
+        }
+        int statements = 0;
+        for (MarkLogicRestStub.Request request : stub.getRequests("POST", "/v1/graphs/sparql")) {
+            Assert.assertTrue(request.getQuery(), request.getQuery().contains("perm:app-user=read"));
+            statements += request.getBody().split("Fei ").length - 1;
+        }
+        Assert.assertEquals(50, statements);
+    }
+
+    @Test
+    public void testCachedAddIsSentBeforeTransaction() throws Exception {
+        ValueFactory vf = conn.getValueFactory();
+        IRI subject = vf.createIRI("http://marklogicsparql.com/id#3333");
+        IRI name = vf.createIRI("http://marklogicsparql.com/addressbook#firstName");
+
+        conn.configureTransactionBuffer(true, 1000, 100);
+        conn.add(subject, name, vf.createLiteral("Fei"));
+        conn.begin();
+        conn.remove(subject, name, vf.createLiteral("Fei"));
+        conn.commit();
+
+        // the add is sent outside the transaction, before the remove within it
+        int insert = -1;
+        int open = -1;
+        int delete = -1;
+        List<MarkLogicRestStub.Request> requests = stub.getRequests();
+        for (int i = 0; i < requests.size(); i++) {
+            MarkLogicRestStub.Request request = requests.get(i);
+            if (request.getMethod().equals("POST") && request.getPath().equals("/v1/transactions")) {
+                open = i;
+            } else if (request.getBody().contains("INSERT DATA")) {
+                insert = i;
+                Assert.assertFalse(request.getQuery(), request.getQuery().contains("txid"));
+            } else if (request.getBody().contains("DELETE DATA")) {
+                delete = i;
+                Assert.assertTrue(request.getQuery(), request.getQuery().contains("txid"));
+            }
+        }
+        Assert.assertTrue(insert >= 0 && insert < open && open < delete);
+    }
+
+    @Test
+    public void testRollbackKeepsCachedAddsMadeBeforeTransaction() throws Exception {
+        ValueFactory vf = conn.getValueFactory();
+        IRI subject = vf.createIRI("http://marklogicsparql.com/id#3333");
+        IRI name = vf.createIRI("http://marklogicsparql.com/addressbook#firstName");
+
+        conn.add(subject, name, vf.createLiteral("Fei"));
+        conn.begin();
+        conn.add(subject, name, vf.createLiteral("Ling"));
+        conn.rollback();
+        conn.sync();
+
+        for (MarkLogicRestStub.Request request : stub.getRequests("POST", "/v1/graphs/sparql")) {
+            String body = request.getBody();
+            if (body.contains("Fei")) {
+                Assert.assertFalse(request.getQuery(), request.getQuery().contains("txid"));
+            }
+            Assert.assertFalse("rolled back add was sent", body.contains("Ling"));
+        }
+        Assert.assertEquals(1, countBodiesContaining("Fei"));
+    }
+
+    private int countBodiesContaining(String text) {
+        int count = 0;
+        for (MarkLogicRestStub.Request request : stub.getRequests("POST", "/v1/graphs/sparql")) {
+            if (request.getBody().contains(text)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testFailedShipIsRollbackOnly() throws Exception {
+        ValueFactory vf = conn.getValueFactory();
+        IRI subject = vf.createIRI("http://marklogicsparql.com/id#3333");
+        IRI age = vf.createIRI("http://marklogicsparql.com/addressbook#age");
+
+        // three update requests of two statements, the second fails
+        conn.configureTransactionBuffer(true, 1000, 2);
+        conn.begin();
+        for (int i = 0; i < 6; i++) {
+            conn.add(subject, age, vf.createLiteral(i));
+        }
+        stub.failAfter("/v1/graphs/sparql", 1);
+        try {
+            conn.sync();
+            Assert.fail("expected the flush to fail");
+        } catch (RuntimeException e) {
+            // the caller may catch this and carry on
+        }
+        Assert.assertEquals(2, stub.getRequests("POST", "/v1/graphs/sparql").size());
+
+        try {
+            conn.commit();
+            Assert.fail("expected commit of a partially shipped transaction to fail");
+        } catch (MarkLogicTransactionException e) {
+            Assert.assertTrue(conn.isActive());
+        }
+        for (MarkLogicRestStub.Request request : stub.getRequests("POST", "/v1/transactions/")) {
+            Assert.assertFalse(request.getQuery().contains("commit"));
+        }
+
+        conn.rollback();
+        Assert.assertFalse(conn.isActive());
+    }
+}
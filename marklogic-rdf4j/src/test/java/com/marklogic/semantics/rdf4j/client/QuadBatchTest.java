@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.eclipse.rdf4j.query.parser.sparql.SPARQLParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * tests QuadBatch serialization by parsing its updates back, without a server
+ *
+ *
+ */
+public class QuadBatchTest {
+
+    private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+    private final IRI subject = vf.createIRI("http://marklogicsparql.com/id#1111");
+    private final IRI name = vf.createIRI("http://marklogicsparql.com/addressbook#firstName");
+    private final IRI age = vf.createIRI("http://marklogicsparql.com/addressbook#age");
+    private final IRI knows = vf.createIRI("http://marklogicsparql.com/addressbook#knows");
+    private final IRI context1 = vf.createIRI("http://marklogic.com/test/context1");
+    private final IRI context2 = vf.createIRI("http://marklogic.com/test/context2");
+
+    @Test
+    public void testWriteToRoundTrip() throws Exception {
+        Model expected = new LinkedHashModel();
+        expected.add(subject, name, vf.createLiteral("Fei \"quoted\"\n\ttab \\ 'single' \r\b\f ünïcode {braces}"), context1);
+        expected.add(subject, name, vf.createLiteral("Fei", "en"), context1);
+        expected.add(subject, name, vf.createLiteral("Féi", "fr-BE"));
+        expected.add(subject, age, vf.createLiteral(42));
+        expected.add(subject, age, vf.createLiteral("42.5", XMLSchema.DECIMAL), context2);
+        expected.add(subject, name, vf.createLiteral("plain"), context2);
+        expected.add(subject, knows, vf.createIRI("http://marklogicsparql.com/id#2222"));
+
+        QuadBatch batch = new QuadBatch();
+        for (Statement st : expected) {
+            batch.add(st);
+        }
+        StringBuilder sb = new StringBuilder();
+        batch.writeTo("INSERT DATA", sb);
+
+        Assert.assertEquals(expected, parse(sb.toString()));
+        Assert.assertTrue(sb.length() <= batch.estimatedLength() + 16);
+    }
+
+    @Test
+    public void testEstimatedLengthCoversUtf8Bytes() throws Exception {
+        IRI context = vf.createIRI("http://marklogic.com/test/графы");
+        Statement st = vf.createStatement(vf.createIRI("http://example.org/主语"), name,
+                vf.createLiteral("ü\u4E2D\u6587 \uD83D\uDE00"), context);
+        QuadBatch batch = new QuadBatch();
+        for (int i = 0; i < 10; i++) {
+            batch.add(st);
+        }
+        StringBuilder sb = new StringBuilder();
+        batch.writeTo("INSERT DATA", sb);
+
+        Assert.assertEquals(1, parse(sb.toString()).size());
+        Assert.assertTrue(sb.toString().getBytes(StandardCharsets.UTF_8).length <= batch.estimatedLength() + 16);
+        Assert.assertTrue(QuadBatch.estimatedLength(st) * 10 <= batch.estimatedLength());
+    }
+
+    @Test
+    public void testContextsAndDefaultGraph() throws Exception {
+        QuadBatch batch = new QuadBatch();
+        batch.add(subject, name, vf.createLiteral("both"), context1, context2);
+        batch.add(subject, name, vf.createLiteral("default"));
+        batch.add(subject, name, vf.createLiteral("explicit default"), (Resource) null);
+        Assert.assertEquals(4, batch.size());
+        Assert.assertEquals(3, batch.contexts().size());
+        Assert.assertTrue(batch.contexts().contains(null));
+
+        StringBuilder sb = new StringBuilder();
+        batch.writeTo("DELETE DATA", sb);
+        Model statements = parse(sb.toString());
+        Assert.assertTrue(statements.contains(subject, name, vf.createLiteral("both"), context1));
+        Assert.assertTrue(statements.contains(subject, name, vf.createLiteral("both"), context2));
+        Assert.assertTrue(statements.contains(subject, name, vf.createLiteral("default"), (Resource) null));
+        Assert.assertTrue(statements.contains(subject, name, vf.createLiteral("explicit default"), (Resource) null));
+    }
+
+    @Test
+    public void testDuplicatesAreKept() throws Exception {
+        QuadBatch batch = new QuadBatch();
+        batch.add(subject, name, vf.createLiteral("Fei"), context1);
+        batch.add(subject, name, vf.createLiteral("Fei"), context1);
+        Assert.assertEquals(2, batch.size());
+
+        StringBuilder sb = new StringBuilder();
+        batch.writeTo("INSERT DATA", sb);
+        Assert.assertEquals(1, parse(sb.toString()).size());
+    }
+
+    @Test
+    public void testWritePartsSplitsGraph() throws Exception {
+        Model expected = new LinkedHashModel();
+        QuadBatch batch = new QuadBatch();
+        for (int i = 0; i < 100; i++) {
+            Statement st = vf.createStatement(subject, age, vf.createLiteral(i), context1);
+            expected.add(st);
+            batch.add(st);
+        }
+        List<String> parts = batch.writeParts("INSERT DATA", 2);
+        Assert.assertEquals(2, parts.size());
+
+        Model actual = new LinkedHashModel();
+        for (String part : parts) {
+            Model statements = parse(part);
+            Assert.assertFalse(statements.isEmpty());
+            Assert.assertEquals(1, statements.contexts().size());
+            actual.addAll(statements);
+        }
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testWritePartsAcrossGraphs() throws Exception {
+        Model expected = new LinkedHashModel();
+        QuadBatch batch = new QuadBatch();
+        for (int i = 0; i < 90; i++) {
+            Resource context = i % 3 == 0 ? null : i % 3 == 1 ? context1 : context2;
+            Statement st = vf.createStatement(subject, name, vf.createLiteral("Fei \"" + i + "\"", "en"), context);
+            expected.add(st);
+            batch.add(st);
+        }
+        List<String> parts = batch.writeParts("DELETE DATA", 4);
+        Assert.assertEquals(4, parts.size());
+
+        Model actual = new LinkedHashModel();
+        for (String part : parts) {
+            Assert.assertTrue(part.startsWith("DELETE DATA"));
+            actual.addAll(parse(part));
+        }
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        QuadBatch batch = new QuadBatch();
+        batch.add(subject, name, vf.createLiteral("Fei"), context1);
+        batch.clear();
+        Assert.assertTrue(batch.isEmpty());
+        Assert.assertEquals(0, batch.estimatedLength());
+        Assert.assertTrue(batch.contexts().isEmpty());
+
+        batch.add(subject, age, vf.createLiteral(1));
+        StringBuilder sb = new StringBuilder();
+        batch.writeTo("INSERT DATA", sb);
+        Model statements = parse(sb.toString());
+        Assert.assertEquals(1, statements.size());
+        Assert.assertTrue(statements.contains(subject, age, vf.createLiteral(1), (Resource) null));
+    }
+
+    @Test
+    public void testEqualTermsShareDictionaryEntries() throws Exception {
+        QuadBatch batch = new QuadBatch();
+        for (int i = 0; i < 100; i++) {
+            batch.add(vf.createIRI(subject.stringValue()), vf.createIRI(name.stringValue()), vf.createLiteral("Fei"), context1);
+        }
+        Assert.assertEquals(3, batch.termCount());
+
+        // the dictionary is reused after clear and grows past its initial capacity
+        batch.clear();
+        Model expected = new LinkedHashModel();
+        for (int i = 0; i < 500; i++) {
+            Statement st = vf.createStatement(subject, name, vf.createLiteral("Fei " + i), context1);
+            expected.add(st);
+            batch.add(st);
+        }
+        Assert.assertEquals(502, batch.termCount());
+        StringBuilder sb = new StringBuilder();
+        batch.writeTo("INSERT DATA", sb);
+        Assert.assertEquals(expected, parse(sb.toString()));
+    }
+
+    // checks update is a valid SPARQL update, then reads its quads back by
+    // parsing the same data block as a query pattern
+    private Model parse(String update) {
+        SPARQLParser parser = new SPARQLParser();
+        parser.parseUpdate(update, null);
+        String block = update.substring(update.indexOf('{') + 1, update.lastIndexOf('}'));
+        List<Statement> statements = new ArrayList<>();
+        parser.parseQuery("SELECT * WHERE {" + block + "}", null).getTupleExpr().visit(new AbstractQueryModelVisitor<RuntimeException>() {
+            @Override
+            public void meet(StatementPattern node) {
+                Var context = node.getContextVar();
+                statements.add(vf.createStatement((Resource) node.getSubjectVar().getValue(), (IRI) node.getPredicateVar().getValue(),
+                        node.getObjectVar().getValue(), context == null ? null : (Resource) context.getValue()));
+            }
+        });
+        return new LinkedHashModel(statements);
+    }
+}
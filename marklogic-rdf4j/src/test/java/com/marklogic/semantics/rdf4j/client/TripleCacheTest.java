@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tests TripleCache flush deadlines, with flushes which never reach a server
+ *
+ *
+ */
+public class TripleCacheTest {
+
+    private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final List<TripleCache> caches = new ArrayList<>();
+
+    private MarkLogicClient client;
+
+    @Before
+    public void setUp() {
+        client = new MarkLogicClient("localhost", 8000, "admin", "admin", null, "DIGEST");
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        for (TripleCache cache : caches) {
+            cache.cancel();
+        }
+        client.close();
+    }
+
+    @Test
+    public void testSlowFlushesDoNotDelayOtherDeadlines() throws Exception {
+        int stalls = TripleCache.getFlushThreads() - 1;
+        stall(stalls);
+
+        CountDownLatch flushed = new CountDownLatch(1);
+        StubCache cache = new StubCache(client, flushed, false);
+        add(cache, stalls);
+        Assert.assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(cache.thread, cache.thread.startsWith("marklogic-cache-flush-"));
+    }
+
+    @Test
+    public void testFlushesQueueWhileAllThreadsFlush() throws Exception {
+        int stalls = TripleCache.getFlushThreads();
+        stall(stalls);
+
+        CountDownLatch flushed = new CountDownLatch(1);
+        add(new StubCache(client, flushed, false), stalls);
+        Assert.assertFalse(flushed.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        Assert.assertTrue(flushed.await(5, TimeUnit.SECONDS));
+    }
+
+    // occupies flush threads with flushes blocking until released
+    private void stall(int flushes) throws Exception {
+        CountDownLatch stalled = new CountDownLatch(flushes);
+        for (int i = 0; i < flushes; i++) {
+            add(new StubCache(client, stalled, true), i);
+        }
+        Assert.assertTrue(stalled.await(5, TimeUnit.SECONDS));
+    }
+
+    private void add(TripleCache cache, int i) throws Exception {
+        caches.add(cache);
+        cache.setCacheMillis(10);
+        cache.add(vf.createIRI("http://example.org/s" + i), vf.createIRI("http://example.org/p"), vf.createLiteral(i));
+    }
+
+    // records the flushing thread, optionally blocking until the test ends
+    private class StubCache extends TripleCache {
+
+        private final CountDownLatch flushed;
+
+        private final boolean block;
+
+        private volatile String thread;
+
+        StubCache(MarkLogicClient client, CountDownLatch flushed, boolean block) {
+            super(client);
+            this.flushed = flushed;
+            this.block = block;
+        }
+
+        @Override
+        protected synchronized void flush() {
+            thread = Thread.currentThread().getName();
+            flushed.countDown();
+            if (block) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+/**
+ * tests TripleJournal files, without a server
+ *
+ *
+ */
+public class TripleJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+    @Test
+    public void testReplaySkipsOpenJournals() throws Exception {
+        File directory = folder.getRoot();
+        TripleJournal journal = new TripleJournal(directory);
+        try {
+            journal.append(vf.createIRI("http://example.org/s"), vf.createIRI("http://example.org/p"), vf.createLiteral("o"));
+            journal.force();
+
+            // nothing is sent, so no client is needed
+            Assert.assertEquals(0, TripleJournal.replay(null, directory));
+            Assert.assertTrue(journal.getFile().exists());
+            Assert.assertTrue(journal.getFile().length() > 0);
+        } finally {
+            journal.close();
+        }
+        Assert.assertTrue(journal.getFile().exists());
+    }
+
+    @Test
+    public void testCloseDeletesEmptyJournal() throws Exception {
+        TripleJournal journal = new TripleJournal(folder.getRoot());
+        journal.append(vf.createIRI("http://example.org/s"), vf.createIRI("http://example.org/p"), vf.createLiteral("o"));
+        journal.truncate();
+        journal.close();
+        Assert.assertFalse(journal.getFile().exists());
+        Assert.assertEquals(0, TripleJournal.replay(null, folder.getRoot()));
+    }
+}
@@ -19,6 +19,7 @@
  */
 package com.marklogic.semantics.rdf4j.config;
 
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
 import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
 import com.marklogic.semantics.rdf4j.Rdf4jTestBase;
 import org.junit.Assert;
@@ -82,4 +83,23 @@ public class MarkLogicRepositoryFactoryTest extends Rdf4jTestBase {
         otherrepo.initialize();
         Assert.assertTrue(otherrepo.getConnection() instanceof RepositoryConnection);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetRepositoryWithSeparateReadAndWriteEndpoints() throws Exception {
+        RepositoryFactory factory = new MarkLogicRepositoryFactory();
+
+        MarkLogicRepositoryConfig config = new MarkLogicRepositoryConfig(
+                "http://" + user + ":" + password + "@" + host + ":" + port + "/v1/graphs/sparql",
+                "http://" + user + ":" + password + "@" + host + ":" + port + "/v1/graphs");
+        MarkLogicRepository repo = (MarkLogicRepository) factory.getRepository(config);
+        Assert.assertNull(repo.getLoadBalancer());
+
+        config = new MarkLogicRepositoryConfig(
+                "http://" + user + ":" + password + "@" + host + ":" + port + "/v1/graphs/sparql?database=replica",
+                "http://" + user + ":" + password + "@" + host + ":" + port + "/v1/graphs");
+        repo = (MarkLogicRepository) factory.getRepository(config);
+        Assert.assertEquals(1, repo.getLoadBalancer().getHosts().size());
+        repo.initialize();
+        repo.shutDown();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015-2018 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.query;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import com.marklogic.semantics.rdf4j.MarkLogicRestStub;
+import com.marklogic.semantics.rdf4j.MarkLogicTransactionException;
+import org.eclipse.rdf4j.query.BooleanQuery;
+import org.eclipse.rdf4j.query.QueryInterruptedException;
+import org.eclipse.rdf4j.query.Update;
+import org.eclipse.rdf4j.query.UpdateExecutionException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests max execution time against a slow stub server, without MarkLogic
+ *
+ *
+ */
+public class MarkLogicQueryTimeoutTest {
+
+    private MarkLogicRestStub stub;
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        stub = new MarkLogicRestStub();
+        rep = stub.newRepository();
+        rep.initialize();
+        conn = rep.getConnection();
+        stub.setResponseDelay(3000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stub.setResponseDelay(0);
+        conn.close();
+        rep.shutDown();
+        stub.close();
+    }
+
+    @Test
+    public void testSlowQueryTimesOut() throws Exception {
+        BooleanQuery query = conn.prepareBooleanQuery("ASK { ?s ?p ?o }");
+        query.setMaxExecutionTime(1);
+        long start = System.currentTimeMillis();
+        try {
+            query.evaluate();
+            Assert.fail("expected the query to time out");
+        } catch (QueryInterruptedException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start < 3000);
+        }
+    }
+
+    @Test
+    public void testSlowUpdateTimesOut() throws Exception {
+        Update update = conn.prepareUpdate("INSERT DATA { <urn:s> <urn:p> <urn:o> }");
+        update.setMaxExecutionTime(1);
+        long start = System.currentTimeMillis();
+        try {
+            update.execute();
+            Assert.fail("expected the update to time out");
+        } catch (UpdateExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof QueryInterruptedException);
+            Assert.assertTrue(System.currentTimeMillis() - start < 3000);
+        }
+    }
+
+    @Test
+    public void testTimedOutUpdateMakesTransactionRollbackOnly() throws Exception {
+        stub.setResponseDelay(0);
+        conn.begin();
+        Update update = conn.prepareUpdate("INSERT DATA { <urn:s> <urn:p> <urn:o> }");
+        update.setMaxExecutionTime(1);
+        stub.setResponseDelay(3000);
+        try {
+            update.execute();
+            Assert.fail("expected the update to time out");
+        } catch (UpdateExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof QueryInterruptedException);
+        }
+        stub.setResponseDelay(0);
+
+        try {
+            conn.commit();
+            Assert.fail("expected commit after an abandoned update to fail");
+        } catch (MarkLogicTransactionException e) {
+            Assert.assertTrue(conn.isActive());
+        }
+        for (MarkLogicRestStub.Request request : stub.getRequests("POST", "/v1/transactions/")) {
+            Assert.assertFalse(request.getQuery().contains("commit"));
+        }
+
+        conn.rollback();
+        Assert.assertFalse(conn.isActive());
+    }
+}
@@ -18,9 +18,17 @@ package com.marklogic.semantics.rdf4j.query;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import com.marklogic.semantics.rdf4j.MarkLogicMetrics;
+import com.marklogic.semantics.rdf4j.MarkLogicQueryListener;
+import com.marklogic.semantics.rdf4j.MarkLogicQueryTrace;
 import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import com.marklogic.semantics.rdf4j.MarkLogicSlowQueryLogger;
 import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
 import org.eclipse.rdf4j.common.iteration.ExceptionConvertingIteration;
 import org.eclipse.rdf4j.rio.helpers.BasicWriterSettings;
@@ -38,18 +46,22 @@ import org.eclipse.rdf4j.query.Query;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.QueryLanguage;
 import org.eclipse.rdf4j.query.QueryResultHandlerException;
+import org.eclipse.rdf4j.query.QueryResults;
 import org.eclipse.rdf4j.query.TupleQuery;
 import org.eclipse.rdf4j.query.TupleQueryResult;
 import org.eclipse.rdf4j.query.TupleQueryResultHandler;
 import org.eclipse.rdf4j.query.resultio.sparqlxml.SPARQLResultsXMLWriter;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.marklogic.client.io.FileHandle;
 import com.marklogic.client.semantics.GraphManager;
 import com.marklogic.client.semantics.RDFMimeTypes;
+import com.marklogic.client.semantics.SPARQLQueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.Rdf4jTestBase;
 
@@ -458,6 +470,55 @@ public class MarkLogicTupleQueryTest extends Rdf4jTestBase {
         results.close();
     }
 
+    @Test
+    public void testSPARQLQueryReevaluatedWithBindings()
+            throws Exception {
+
+        String queryString = "select ?s ?p ?o { ?s ?p ?o . filter (?s = ?b) filter (?p = ?c) }";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        tupleQuery.setBinding("c", SimpleValueFactory.getInstance().createIRI("http://semanticbible.org/ns/2006/NTNames#parentOf"));
+
+        tupleQuery.setBinding("b", SimpleValueFactory.getInstance().createIRI("http://semanticbible.org/ns/2006/NTNames#Jotham"));
+        TupleQueryResult results = tupleQuery.evaluate();
+        Assert.assertTrue(results.hasNext());
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#Jotham", results.next().getValue("s").stringValue());
+        results.close();
+
+        tupleQuery.setBinding("b", SimpleValueFactory.getInstance().createIRI("http://semanticbible.org/ns/2006/NTNames#CainanSonOfArphaxad"));
+        results = tupleQuery.evaluate();
+        Assert.assertTrue(results.hasNext());
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#Shelah", results.next().getValue("o").stringValue());
+        results.close();
+
+        tupleQuery.setRulesets(SPARQLRuleset.RDFS);
+        Assert.assertEquals(SPARQLRuleset.RDFS, tupleQuery.getRulesets()[0]);
+        results = tupleQuery.evaluate();
+        Assert.assertTrue(results.hasNext());
+        results.close();
+    }
+
+    @Test
+    public void testEvaluationsGetTheirOwnQueryDefinition()
+            throws Exception {
+
+        String queryString = "select ?s ?p ?o { ?s ?p ?o . filter (?s = ?b) }";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        tupleQuery.setRulesets(SPARQLRuleset.RDFS);
+
+        tupleQuery.setBinding("b", SimpleValueFactory.getInstance().createIRI("http://semanticbible.org/ns/2006/NTNames#Jotham"));
+        SPARQLQueryDefinition first = tupleQuery.getQueryDefinition();
+        tupleQuery.setBinding("b", SimpleValueFactory.getInstance().createIRI("http://semanticbible.org/ns/2006/NTNames#CainanSonOfArphaxad"));
+        SPARQLQueryDefinition second = tupleQuery.getQueryDefinition();
+
+        // an evaluation still building its request keeps its own bindings
+        Assert.assertNotSame(first, second);
+        Assert.assertTrue(first.getSparql().contains("Jotham"));
+        Assert.assertFalse(first.getSparql().contains("CainanSonOfArphaxad"));
+        Assert.assertTrue(second.getSparql().contains("CainanSonOfArphaxad"));
+        Assert.assertEquals(SPARQLRuleset.RDFS, first.getRulesets()[0]);
+        Assert.assertEquals(SPARQLRuleset.RDFS, second.getRulesets()[0]);
+    }
+
 
     @Test
     public void testSPARQLWithWriter()
@@ -537,6 +598,161 @@ public class MarkLogicTupleQueryTest extends Rdf4jTestBase {
         results.close();
     }
 
+    @Test
+    public void testSPARQLQueryWithMaxExecutionTime()
+            throws Exception {
+        String queryString = "select ?s ?p ?o { ?s ?p ?o } limit 100 ";
+        conn.setDefaultMaxExecutionTime(30);
+        try {
+            TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+            Assert.assertEquals(30, tupleQuery.getMaxExecutionTime());
+
+            tupleQuery.setMaxExecutionTime(60);
+            Assert.assertEquals(60, tupleQuery.getMaxExecutionTime());
+
+            TupleQueryResult results = tupleQuery.evaluate();
+            Assert.assertTrue(results.hasNext());
+            results.close();
+        } finally {
+            conn.setDefaultMaxExecutionTime(0);
+        }
+    }
+
+    @Test
+    public void testSPARQLQueryEvaluateAsync()
+            throws Exception {
+        String queryString = "select ?s ?p ?o { ?s ?p ?o } limit 10 ";
+        MarkLogicTupleQuery first = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        MarkLogicTupleQuery second = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+
+        CompletableFuture<TupleQueryResult> firstResult = first.evaluateAsync();
+        CompletableFuture<TupleQueryResult> secondResult = second.evaluateAsync(1, 5);
+
+        try (TupleQueryResult results = firstResult.get()) {
+            Assert.assertEquals(10, QueryResults.asList(results).size());
+        }
+        try (TupleQueryResult results = secondResult.get()) {
+            Assert.assertEquals(5, QueryResults.asList(results).size());
+        }
+    }
+
+    @Test
+    public void testSPARQLQueryEvaluatePublisher()
+            throws Exception {
+        String queryString = "select ?s ?p ?o { ?s ?p ?o } limit 100 ";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+
+        List<BindingSet> received = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        tupleQuery.evaluatePublisher().subscribe(new Subscriber<BindingSet>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(BindingSet bindingSet) {
+                received.add(bindingSet);
+                if (received.size() == 5) {
+                    subscription.cancel();
+                    latch.countDown();
+                } else {
+                    subscription.request(1);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                latch.countDown();
+            }
+        });
+
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(5, received.size());
+        Assert.assertEquals("http://semanticbible.org/ns/2006/NTNames#AttaliaGeodata", received.get(0).getValue("s").stringValue());
+    }
+
+    @Test
+    public void testSPARQLQueryMetrics()
+            throws Exception {
+        List<String> requests = new ArrayList<>();
+        long[] parsed = new long[2];
+        CountDownLatch done = new CountDownLatch(1);
+        rep.setMetrics(new MarkLogicMetrics() {
+            @Override
+            public void requestCompleted(Operation operation, long nanos, boolean failed) {
+                requests.add(operation.tag() + (failed ? " failed" : ""));
+            }
+
+            @Override
+            public void resultParsed(Operation operation, long results, long bytesReceived, long nanos) {
+                parsed[0] = results;
+                parsed[1] = bytesReceived;
+                done.countDown();
+            }
+        });
+        MarkLogicRepositoryConnection metered = rep.getConnection();
+        try {
+            TupleQuery tupleQuery = metered.prepareTupleQuery(QueryLanguage.SPARQL, "select ?s ?p ?o { ?s ?p ?o } limit 5");
+            try (TupleQueryResult results = tupleQuery.evaluate()) {
+                Assert.assertEquals(5, QueryResults.asList(results).size());
+            }
+            Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+            Assert.assertEquals(5, parsed[0]);
+            Assert.assertTrue(parsed[1] > 0);
+            Assert.assertEquals(1, requests.size());
+            Assert.assertEquals("select", requests.get(0));
+        } finally {
+            metered.close();
+        }
+    }
+
+    @Test
+    public void testSPARQLQueryTrace()
+            throws Exception {
+        List<MarkLogicQueryTrace.Phase> phases = new ArrayList<>();
+        CompletableFuture<MarkLogicQueryTrace> completed = new CompletableFuture<>();
+        rep.addQueryListener(new MarkLogicQueryListener() {
+            @Override
+            public void phaseCompleted(MarkLogicQueryTrace trace, MarkLogicQueryTrace.Phase phase, long nanos) {
+                phases.add(phase);
+            }
+
+            @Override
+            public void queryCompleted(MarkLogicQueryTrace trace) {
+                completed.complete(trace);
+            }
+        });
+        rep.addQueryListener(new MarkLogicSlowQueryLogger(0));
+        MarkLogicRepositoryConnection traced = rep.getConnection();
+        try {
+            TupleQuery tupleQuery = traced.prepareTupleQuery(QueryLanguage.SPARQL, "select ?s ?p ?o { ?s ?p ?o } limit 3");
+            try (TupleQueryResult results = tupleQuery.evaluate()) {
+                Assert.assertEquals(3, QueryResults.asList(results).size());
+            }
+            MarkLogicQueryTrace trace = completed.get(30, TimeUnit.SECONDS);
+            Assert.assertEquals(MarkLogicMetrics.Operation.SELECT, trace.getOperation());
+            Assert.assertNull(trace.getFailure());
+            Assert.assertEquals(3, trace.getResults());
+            Assert.assertTrue(trace.getBytesReceived() > 0);
+            Assert.assertTrue(trace.getQuery().contains("limit 3"));
+            Assert.assertEquals(4, phases.size());
+            Assert.assertEquals(MarkLogicQueryTrace.Phase.PREPARE, phases.get(0));
+            Assert.assertEquals(MarkLogicQueryTrace.Phase.FIRST_BYTE, phases.get(1));
+            Assert.assertTrue(trace.getTotalNanos() >= trace.getPhaseNanos(MarkLogicQueryTrace.Phase.FIRST_BYTE));
+        } finally {
+            traced.close();
+        }
+    }
+
     @Test(expected=org.eclipse.rdf4j.query.QueryEvaluationException.class)
     public void testSPARQLQueryQueryEvaluationException()
             throws Exception {